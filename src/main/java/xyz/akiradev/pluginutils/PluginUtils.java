@@ -4,6 +4,7 @@ import org.bstats.bukkit.Metrics;
 import org.bukkit.plugin.java.JavaPlugin;
 import xyz.akiradev.pluginutils.manager.AbstractConfigurationManager;
 import xyz.akiradev.pluginutils.manager.AbstractLocaleManager;
+import xyz.akiradev.pluginutils.manager.FileWatchManager;
 import xyz.akiradev.pluginutils.manager.Manager;
 import xyz.akiradev.pluginutils.manager.PluginUpdateManager;
 
@@ -70,6 +71,9 @@ public abstract class PluginUtils extends JavaPlugin {
     @Override
     public void onDisable() {
         this.disable();
+
+        // Stop anything the managers still have running, such as the file watcher
+        this.disableManagers();
     }
 
     /**
@@ -118,6 +122,9 @@ public abstract class PluginUtils extends JavaPlugin {
         if (this.spigotId != -1)
             managerLoadPriority.add(PluginUpdateManager.class);
 
+        if (this.hasConfigurationManager())
+            managerLoadPriority.add(FileWatchManager.class);
+
         managerLoadPriority.forEach(this::getManager);
     }
 
@@ -17,6 +17,25 @@ public class PAPIHook {
         return enabled = Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI");
     }
 
+    /**
+     * Checks if a string contains anything PlaceholderAPI could replace, text between two % signs
+     *
+     * @param text The text to check
+     * @return true if the text could contain PlaceholderAPI placeholders, otherwise false
+     */
+    public static boolean containsPlaceholders(String text) {
+        int start = text.indexOf('%');
+        while (start != -1) {
+            int end = text.indexOf('%', start + 1);
+            if (end == -1)
+                return false;
+            if (end > start + 1)
+                return true;
+            start = end;
+        }
+        return false;
+    }
+
     /**
      * Applies placeholders from PlaceholderAPI to strings
      *
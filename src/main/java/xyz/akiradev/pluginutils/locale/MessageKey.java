@@ -0,0 +1,18 @@
+package xyz.akiradev.pluginutils.locale;
+
+/**
+ * A message in the locale files, implemented by an enum so the messages can be looked up by their ordinal
+ */
+public interface MessageKey {
+
+    /**
+     * @return the key of this message in the locale files
+     */
+    String getKey();
+
+    /**
+     * @return the position of this message in its enum, implemented by the enum itself
+     */
+    int ordinal();
+
+}
@@ -5,14 +5,19 @@
 package xyz.akiradev.pluginutils.manager;
 
 import xyz.akiradev.pluginutils.PluginUtils;
+import xyz.akiradev.pluginutils.config.CommentedConfigurationSection;
 import xyz.akiradev.pluginutils.config.CommentedFileConfiguration;
 import xyz.akiradev.pluginutils.config.PluginSetting;
 import xyz.akiradev.pluginutils.config.SingularPluginSetting;
 
 import java.io.File;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public abstract class AbstractConfigurationManager extends Manager {
 
@@ -24,7 +29,7 @@ public abstract class AbstractConfigurationManager extends Manager {
     };
 
     private final Class<? extends PluginSetting> settingEnum;
-    private CommentedFileConfiguration configuration;
+    private volatile CommentedFileConfiguration configuration; // Read by the file watcher thread
     private Map<String, PluginSetting> cachedValues;
 
     public AbstractConfigurationManager(PluginUtils plugin, Class<? extends PluginSetting> settingEnum) {
@@ -60,6 +65,73 @@ public abstract class AbstractConfigurationManager extends Manager {
             this.configuration.save();
     }
 
+    /**
+     * Parses config.yml if it is the changed file, the parsed file is swapped in by running the returned task
+     *
+     * @param file The file that changed
+     * @return the task to run on the main thread to apply the change, or null if the file isn't config.yml
+     */
+    final Runnable prepareReload(File file) {
+        if (!file.equals(new File(this.plugin.getDataFolder(), "config.yml")))
+            return null;
+
+        CommentedFileConfiguration previous = this.configuration;
+        CommentedFileConfiguration configuration = CommentedFileConfiguration.loadConfiguration(file);
+        return () -> {
+            if (this.configuration == previous)
+                this.swapConfiguration(configuration);
+        };
+    }
+
+    /**
+     * Replaces the config.yml with a newly parsed one, only the settings whose values changed are reloaded
+     *
+     * @param configuration The new config.yml
+     */
+    private void swapConfiguration(CommentedFileConfiguration configuration) {
+        CommentedFileConfiguration previous = this.configuration;
+        this.configuration = configuration;
+
+        Set<String> changedKeys = new HashSet<>();
+        boolean changed = false;
+        for (PluginSetting setting : this.getSettings().values()) {
+            String key = setting.getKey();
+            if (!Objects.equals(getValue(previous, key), getValue(configuration, key))) {
+                setting.reset();
+                changedKeys.add(key);
+            }
+            changed |= setting.setIfNotExists(configuration);
+        }
+
+        if (changed)
+            configuration.save();
+
+        if (this.plugin.hasLocaleManager() && (changedKeys.contains("locale") || changedKeys.contains("use-player-locale")))
+            this.plugin.getManager(AbstractLocaleManager.class).reload();
+
+        if (changedKeys.contains("watch-files"))
+            this.plugin.getManager(FileWatchManager.class).reload();
+    }
+
+    /**
+     * Gets the value of a setting in a way that can be compared between two files, sections by their values
+     *
+     * @param configuration The file to get the value from
+     * @param key The key of the setting
+     * @return the value of the setting
+     */
+    private static Object getValue(CommentedFileConfiguration configuration, String key) {
+        if (!configuration.isConfigurationSection(key))
+            return configuration.get(key);
+
+        CommentedConfigurationSection section = configuration.getConfigurationSection(key);
+        Map<String, Object> values = new HashMap<>();
+        for (String path : section.getKeys(true))
+            if (!section.isConfigurationSection(path))
+                values.put(path, section.get(path));
+        return values;
+    }
+
     @Override
     public final void disable() {
         for (PluginSetting setting : this.getSettings().values())
@@ -106,8 +178,12 @@ public abstract class AbstractConfigurationManager extends Manager {
         Map<String, PluginSetting> values = this.cachedValues;
         this.cachedValues = new LinkedHashMap<>();
 
-        if (this.plugin.hasLocaleManager())
+        this.cachedValues.put("watch-files", new SingularPluginSetting(this.plugin, "watch-files", false, "Should changes to the config.yml and the /locale folder be applied as soon as the files are saved?"));
+
+        if (this.plugin.hasLocaleManager()) {
             this.cachedValues.put("locale", new SingularPluginSetting(this.plugin, "locale", "en_US", "The locale to use in the /locale folder"));
+            this.cachedValues.put("use-player-locale", new SingularPluginSetting(this.plugin, "use-player-locale", false, "Should messages be sent in the language of each player's client?", "Players whose language has no file in the /locale folder get the locale above"));
+        }
 
         this.cachedValues.putAll(values);
     }
@@ -1,39 +1,109 @@
 package xyz.akiradev.pluginutils.manager;
 
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
 import xyz.akiradev.pluginutils.PluginUtils;
 import xyz.akiradev.pluginutils.config.CommentedFileConfiguration;
+import xyz.akiradev.pluginutils.config.PluginSetting;
 import xyz.akiradev.pluginutils.hooks.PAPIHook;
 import xyz.akiradev.pluginutils.locale.Locale;
+import xyz.akiradev.pluginutils.locale.MessageKey;
 import xyz.akiradev.pluginutils.utils.HexUtils;
+import xyz.akiradev.pluginutils.utils.MessageTemplate;
 import xyz.akiradev.pluginutils.utils.StringPlaceholders;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public abstract class AbstractLocaleManager extends Manager {
 
     protected final PluginUtils plugin;
 
-    protected CommentedFileConfiguration locale;
+    private volatile File localeFile;
+
+    private volatile CommentedFileConfiguration localeConfiguration;
+
+    private static final long LOCALE_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10); // How long a locale nobody uses stays loaded
+    private static final long LOCALE_SWEEP_TICKS = 20 * 60; // How often idle locales are looked for
+
+    private final MessageKey[] messageKeys;
+    private volatile LocaleMessages messages;
+    private volatile LocaleFiles localeFiles = LocaleFiles.EMPTY;
+    private final Map<String, String> resolvedLocales = new ConcurrentHashMap<>();
+    private final Map<String, LocaleMessages> loadedLocales = new ConcurrentHashMap<>();
+    private final LongAdder skippedPlaceholderAPICalls = new LongAdder();
+    private BukkitTask unloadTask;
 
     public AbstractLocaleManager(PluginUtils plugin) {
+        this(plugin, new MessageKey[0]);
+    }
+
+    /**
+     * Creates a locale manager whose messages can also be looked up by an enum of message keys.
+     * The messages of the enum are resolved into an array on reload, so looking one up is an array index.
+     *
+     * @param plugin The plugin
+     * @param messageEnum The enum of the message keys
+     */
+    public AbstractLocaleManager(PluginUtils plugin, Class<? extends MessageKey> messageEnum) {
+        this(plugin, getMessageKeys(messageEnum));
+    }
+
+    private AbstractLocaleManager(PluginUtils plugin, MessageKey[] messageKeys) {
         super(plugin);
         this.plugin = plugin;
+        this.messageKeys = messageKeys;
+        this.messages = new LocaleMessages(Collections.emptyMap(), Collections.emptyMap(), Collections.emptySet(), messageKeys);
+    }
+
+    private static MessageKey[] getMessageKeys(Class<? extends MessageKey> messageEnum) {
+        if (!messageEnum.isEnum())
+            throw new IllegalArgumentException("messageEnum class must be of type Enum");
+        return messageEnum.getEnumConstants();
     }
 
     /**
      * Creates a .lang file if one doesn't exist
      * Cross merges values between files into the .lang file, the .lang values take priority
+     * Files that haven't changed since they were last merged with the same defaults are skipped
      *
      * @param locale The Locale to register
+     * @param manifest The hashes of the locale files and their defaults when they were last merged
+     * @return true if the manifest was changed, otherwise false
      */
-    private void registerLocale(Locale locale) {
+    private boolean registerLocale(Locale locale, Properties manifest) {
         File file = new File(this.plugin.getDataFolder() + "/locale", locale.getLocaleName() + ".lang");
+        Map<String, Object> defaultLocaleStrings = locale.getDefaultLocaleValues();
+        String defaultsHash = LocaleCache.hashDefaults(defaultLocaleStrings);
+        String entry = manifest.getProperty(file.getName());
+        if (entry != null && file.exists()) {
+            try {
+                if (entry.equals(LocaleCache.hashFile(file) + ':' + defaultsHash))
+                    return false;
+            } catch (IOException e) {
+                this.plugin.getLogger().warning("Unable to hash locale file " + file.getName() + ": " + e.getMessage());
+            }
+        }
+
         boolean newFile = false;
         if (!file.exists()) {
             try {
@@ -48,7 +118,6 @@ public abstract class AbstractLocaleManager extends Manager {
         CommentedFileConfiguration configuration = CommentedFileConfiguration.loadConfiguration(file);
         if (newFile) {
             configuration.addComments(locale.getLocaleName() + " translation by " + locale.getTranslatorName());
-            Map<String, Object> defaultLocaleStrings = locale.getDefaultLocaleValues();
             for (String key : defaultLocaleStrings.keySet()) {
                 Object value = defaultLocaleStrings.get(key);
                 if (key.startsWith("#")) {
@@ -59,7 +128,6 @@ public abstract class AbstractLocaleManager extends Manager {
             }
             changed = true;
         } else {
-            Map<String, Object> defaultLocaleStrings = locale.getDefaultLocaleValues();
             for (String key : defaultLocaleStrings.keySet()) {
                 if (key.startsWith("#"))
                     continue;
@@ -74,6 +142,14 @@ public abstract class AbstractLocaleManager extends Manager {
 
         if (changed)
             configuration.save();
+
+        try {
+            manifest.setProperty(file.getName(), LocaleCache.hashFile(file) + ':' + defaultsHash);
+            return true;
+        } catch (IOException e) {
+            this.plugin.getLogger().warning("Unable to hash locale file " + file.getName() + ": " + e.getMessage());
+            return false;
+        }
     }
 
     @Override
@@ -82,13 +158,29 @@ public abstract class AbstractLocaleManager extends Manager {
         if (!localeDirectory.exists())
             localeDirectory.mkdirs();
 
-        this.getLocales().forEach(this::registerLocale);
+        File manifestFile = new File(localeDirectory, "cache/manifest.properties");
+        Properties manifest = LocaleCache.readManifest(manifestFile);
+        boolean manifestChanged = false;
+        for (Locale locale : this.getLocales())
+            manifestChanged |= this.registerLocale(locale, manifest);
+
+        if (manifestChanged) {
+            try {
+                LocaleCache.writeManifest(manifestFile, manifest);
+            } catch (IOException e) {
+                this.plugin.getLogger().warning("Unable to save the locale manifest: " + e.getMessage());
+            }
+        }
 
         String locale;
+        boolean playerLocales;
         if (this.plugin.hasConfigurationManager()) {
-            locale = this.plugin.getManager(AbstractConfigurationManager.class).getSettings().get("locale").getString();
+            Map<String, PluginSetting> settings = this.plugin.getManager(AbstractConfigurationManager.class).getSettings();
+            locale = settings.get("locale").getString();
+            playerLocales = settings.get("use-player-locale").getBoolean();
         } else {
             locale = "en_US";
+            playerLocales = false;
         }
 
         File targetLocaleFile = new File(this.plugin.getDataFolder() + "/locale", locale + ".lang");
@@ -97,12 +189,197 @@ public abstract class AbstractLocaleManager extends Manager {
             this.plugin.getLogger().severe("File " + targetLocaleFile.getName() + " does not exist. Defaulting to en_US.lang");
         }
 
-        this.locale = CommentedFileConfiguration.loadConfiguration(targetLocaleFile);
+        this.localeFile = targetLocaleFile;
+        this.localeConfiguration = null;
+        this.messages = this.compileMessages(this.loadMessages(targetLocaleFile), LocaleMessages.EMPTY);
+        this.localeFiles = playerLocales ? new LocaleFiles(localeDirectory, targetLocaleFile) : LocaleFiles.EMPTY;
+        this.resolvedLocales.clear();
+        this.loadedLocales.clear();
+
+        if (this.unloadTask != null) {
+            this.unloadTask.cancel();
+            this.unloadTask = null;
+        }
+        if (playerLocales)
+            this.unloadTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this.plugin, this::unloadIdleLocales, LOCALE_SWEEP_TICKS, LOCALE_SWEEP_TICKS);
+    }
+
+    /**
+     * Unloads the locales nobody has used for a while, every locale in use stays loaded however many there are
+     */
+    private void unloadIdleLocales() {
+        long now = System.currentTimeMillis();
+        this.loadedLocales.values().removeIf(x -> now - x.lastUsed > LOCALE_IDLE_MILLIS);
+    }
+
+    /**
+     * Gets the messages of a locale file, from its binary snapshot if the file hasn't changed since the snapshot
+     * was made, otherwise by parsing the file and making a new snapshot
+     *
+     * @param localeFile The locale file
+     * @return The messages by their keys
+     */
+    private Map<String, String> loadMessages(File localeFile) {
+        File cacheFile = new File(localeFile.getParentFile(), "cache/" + localeFile.getName() + ".bin");
+        Map<String, String> messages = LocaleCache.read(localeFile, cacheFile);
+        if (messages != null)
+            return messages;
+
+        messages = LocaleCache.getMessages(CommentedFileConfiguration.loadConfiguration(localeFile));
+        try {
+            LocaleCache.write(localeFile, cacheFile, messages);
+        } catch (IOException e) {
+            this.plugin.getLogger().warning("Unable to cache locale file " + localeFile.getName() + ": " + e.getMessage());
+        }
+        return messages;
+    }
+
+    /**
+     * Compiles every message of a locale file so they only have to be parsed once per reload.
+     * Messages that never change are also rendered with the prefix in front, ready to be sent.
+     *
+     * @param locale The messages of the locale file by their keys
+     * @param previous The previously compiled messages of the locale file, unchanged messages are reused from them
+     * @return The compiled messages
+     */
+    private LocaleMessages compileMessages(Map<String, String> locale, LocaleMessages previous) {
+        Map<String, MessageTemplate> templates = new HashMap<>();
+        Set<String> placeholderFree = new HashSet<>();
+        for (Map.Entry<String, String> entry : locale.entrySet()) {
+            String key = entry.getKey();
+            String message = entry.getValue();
+            MessageTemplate template = previous.templates.get(key);
+            templates.put(key, template != null && template.getMessage().equals(message) ? template : MessageTemplate.compile(message));
+
+            // Without a % there are no placeholders to fill in, so nothing for PlaceholderAPI to replace either
+            if (message.indexOf('%') == -1)
+                placeholderFree.add(key);
+        }
+
+        Map<String, String> prefixed = new HashMap<>();
+        MessageTemplate prefix = templates.get("prefix");
+        if (prefix != null && !prefix.isAnimated()) {
+            String renderedPrefix = prefix.render(StringPlaceholders.empty());
+            for (Map.Entry<String, MessageTemplate> entry : templates.entrySet()) {
+                if (entry.getValue().isAnimated())
+                    continue;
+
+                String message = entry.getValue().render(StringPlaceholders.empty());
+                prefixed.put(entry.getKey(), message.isEmpty() ? "" : renderedPrefix + message);
+            }
+        }
+
+        return new LocaleMessages(templates, prefixed, placeholderFree, this.messageKeys);
+    }
+
+    /**
+     * Gets the configured locale file, it is only parsed the first time it is needed after a reload since messages
+     * are read from its binary snapshot. This replaces the protected locale field.
+     *
+     * @return the configured locale file
+     */
+    protected final CommentedFileConfiguration getLocaleConfiguration() {
+        CommentedFileConfiguration localeConfiguration = this.localeConfiguration;
+        if (localeConfiguration == null && this.localeFile != null)
+            this.localeConfiguration = localeConfiguration = CommentedFileConfiguration.loadConfiguration(this.localeFile);
+        return localeConfiguration;
+    }
+
+    /**
+     * Loads a changed locale file, the loaded messages are swapped in by running the returned task.
+     * Only the messages that changed are compiled again.
+     *
+     * @param file The file that changed
+     * @return the task to run on the main thread to apply the change, or null if nothing has to change
+     */
+    final Runnable prepareReload(File file) {
+        if (!file.getName().endsWith(".lang") || !file.getParentFile().equals(new File(this.plugin.getDataFolder(), "locale")))
+            return null;
+
+        LocaleMessages previous = this.messages;
+        if (file.equals(this.localeFile)) {
+            if (!file.isFile())
+                return null; // Keep the messages of a deleted file until the next reload
+
+            LocaleMessages messages = this.compileMessages(this.loadMessages(file), previous);
+            return () -> {
+                if (this.messages == previous) {
+                    this.messages = messages;
+                    this.localeConfiguration = null;
+                }
+            };
+        }
+
+        LocaleFiles localeFiles = this.localeFiles;
+        if (localeFiles == LocaleFiles.EMPTY)
+            return null;
+
+        // A locale file was added or removed, players may be matched to different files now
+        String locale = LocaleFiles.getLocaleName(file);
+        if (localeFiles.files.containsKey(locale) != file.isFile()) {
+            LocaleFiles newLocaleFiles = new LocaleFiles(file.getParentFile(), this.localeFile);
+            return () -> {
+                if (this.localeFiles == localeFiles) {
+                    this.localeFiles = newLocaleFiles;
+                    this.resolvedLocales.clear();
+                    this.loadedLocales.remove(locale);
+                }
+            };
+        }
+
+        // Locales nobody is using are loaded again when they are needed
+        LocaleMessages loaded = this.loadedLocales.get(locale);
+        if (loaded == null)
+            return null;
+
+        LocaleMessages messages = this.compileMessages(this.loadMessages(file), loaded);
+        messages.lastUsed = loaded.lastUsed;
+        return () -> this.loadedLocales.replace(locale, loaded, messages);
     }
 
     @Override
     public final void disable() {
+        if (this.unloadTask != null) {
+            this.unloadTask.cancel();
+            this.unloadTask = null;
+        }
+
+        this.resolvedLocales.clear();
+        this.loadedLocales.clear();
+    }
+
+    /**
+     * Gets the messages to send to a CommandSender, in the language of their client if there is a locale file for it
+     *
+     * @param sender The CommandSender
+     * @return the messages for the CommandSender
+     */
+    private LocaleMessages getMessages(CommandSender sender) {
+        LocaleMessages messages = this.messages;
+        LocaleFiles localeFiles = this.localeFiles;
+        if (localeFiles == LocaleFiles.EMPTY || !(sender instanceof Player))
+            return messages;
+
+        String clientLocale = ((Player) sender).getLocale();
+        if (clientLocale == null)
+            return messages;
 
+        String locale = this.resolvedLocales.computeIfAbsent(clientLocale, localeFiles::resolve);
+        if (locale.equals(localeFiles.defaultLocale))
+            return messages;
+
+        long now = System.currentTimeMillis();
+        LocaleMessages localeMessages = this.loadedLocales.get(locale);
+        if (localeMessages != null) {
+            localeMessages.lastUsed = now;
+            return localeMessages;
+        }
+
+        // Load the locale on first use, a reload while loading makes it stale so only keep it if there wasn't one
+        localeMessages = this.compileMessages(this.loadMessages(localeFiles.files.get(locale)), LocaleMessages.EMPTY);
+        if (localeFiles == this.localeFiles)
+            this.loadedLocales.putIfAbsent(locale, localeMessages);
+        return localeMessages;
     }
 
     public abstract List<Locale> getLocales();
@@ -125,10 +402,132 @@ public abstract class AbstractLocaleManager extends Manager {
      * @return The locale message with the given placeholders applied
      */
     public final String getLocaleMessage(String messageKey, StringPlaceholders stringPlaceholders) {
-        String message = this.locale.getString(messageKey);
-        if (message == null)
-            return ChatColor.RED + "Missing message in locale file: " + messageKey;
-        return HexUtils.colorify(stringPlaceholders.apply(message));
+        return this.getLocaleMessage(this.messages, messageKey, -1, stringPlaceholders);
+    }
+
+    /**
+     * Gets a locale message in the language of a CommandSender with the given placeholders applied
+     *
+     * @param sender The CommandSender the message is for
+     * @param messageKey The key of the message to get
+     * @param stringPlaceholders The placeholders to apply
+     * @return The locale message with the given placeholders applied
+     */
+    public final String getLocaleMessage(CommandSender sender, String messageKey, StringPlaceholders stringPlaceholders) {
+        return this.getLocaleMessage(this.getMessages(sender), messageKey, -1, stringPlaceholders);
+    }
+
+    /**
+     * Gets a locale message in the language of a CommandSender
+     *
+     * @param sender The CommandSender the message is for
+     * @param messageKey The key of the message to get
+     * @return The locale message
+     */
+    public final String getLocaleMessage(CommandSender sender, String messageKey) {
+        return this.getLocaleMessage(sender, messageKey, StringPlaceholders.empty());
+    }
+
+    /**
+     * Gets a locale message with the given placeholders applied, messages missing from a player's locale are taken
+     * from the default locale
+     *
+     * @param messages The messages of the locale to get the message from
+     * @param messageKey The key of the message to get
+     * @param index The index of the message, or -1 to look it up by its key
+     * @param stringPlaceholders The placeholders to apply
+     * @return The locale message with the given placeholders applied
+     */
+    private String getLocaleMessage(LocaleMessages messages, String messageKey, int index, StringPlaceholders stringPlaceholders) {
+        MessageTemplate template = this.getTemplate(messages, messageKey, index);
+        return template != null ? template.render(stringPlaceholders) : this.getMissingMessage(messageKey);
+    }
+
+    /**
+     * Appends a locale message with the given placeholders applied, messages missing from a player's locale are
+     * taken from the default locale
+     *
+     * @param messages The messages of the locale to get the message from
+     * @param messageKey The key of the message to get
+     * @param index The index of the message, or -1 to look it up by its key
+     * @param stringPlaceholders The placeholders to apply
+     * @param builder The StringBuilder to append the message to
+     */
+    private void appendLocaleMessage(LocaleMessages messages, String messageKey, int index, StringPlaceholders stringPlaceholders, StringBuilder builder) {
+        MessageTemplate template = this.getTemplate(messages, messageKey, index);
+        if (template != null) {
+            template.render(stringPlaceholders, builder);
+        } else {
+            builder.append(this.getMissingMessage(messageKey));
+        }
+    }
+
+    /**
+     * @param messages The messages of the locale to get the message from
+     * @param messageKey The key of the message to get
+     * @param index The index of the message, or -1 to look it up by its key
+     * @return the template of the message, taken from the default locale if the locale doesn't have it, or null if
+     * neither has it
+     */
+    private MessageTemplate getTemplate(LocaleMessages messages, String messageKey, int index) {
+        MessageTemplate template = messages.getTemplate(messageKey, index);
+        LocaleMessages defaultMessages = this.messages;
+        if (template == null && messages != defaultMessages)
+            template = defaultMessages.getTemplate(messageKey, index);
+        return template;
+    }
+
+    /**
+     * Every key with a value was compiled, anything else is missing until the next reload
+     *
+     * @param messageKey The key of the missing message
+     * @return the message sent in place of the missing message
+     */
+    private String getMissingMessage(String messageKey) {
+        LocaleMessages messages = this.messages;
+        MissingMessage missing = messages.missing.get(messageKey);
+        if (missing == null) {
+            missing = messages.missing.computeIfAbsent(messageKey, key -> {
+                File localeFile = this.localeFile;
+                this.plugin.getLogger().warning("Missing message in locale file " + (localeFile != null ? localeFile.getName() : "") + ": " + key);
+                return new MissingMessage(ChatColor.RED + "Missing message in locale file: " + key);
+            });
+        }
+        missing.hits.increment();
+        return missing.message;
+    }
+
+    /**
+     * Gets a locale message with the given placeholders applied and the prefix in front of it
+     *
+     * @param messages The messages of the locale to get the message from
+     * @param messageKey The key of the message to get
+     * @param index The index of the message, or -1 to look it up by its key
+     * @param stringPlaceholders The placeholders to apply
+     * @return The locale message with the prefix, or an empty string if the message is empty
+     */
+    private String getPrefixedMessage(LocaleMessages messages, String messageKey, int index, StringPlaceholders stringPlaceholders) {
+        if (stringPlaceholders.isEmpty()) {
+            String prefixed = messages.getPrefixed(messageKey, index);
+            if (prefixed != null)
+                return prefixed;
+        }
+
+        // Render the prefix and the message into one buffer instead of joining two strings
+        StringBuilder builder = new StringBuilder(128);
+        this.appendLocaleMessage(messages, "prefix", -1, StringPlaceholders.empty(), builder);
+        int prefixLength = builder.length();
+        this.appendLocaleMessage(messages, messageKey, index, stringPlaceholders, builder);
+        return builder.length() == prefixLength ? "" : builder.toString();
+    }
+
+    /**
+     * @param messageKey The message key
+     * @return the index of the message key, or -1 if it isn't one of the message keys of this manager
+     */
+    private int indexOf(MessageKey messageKey) {
+        int index = messageKey.ordinal();
+        return index < this.messageKeys.length && this.messageKeys[index] == messageKey ? index : -1;
     }
 
     /**
@@ -139,11 +538,12 @@ public abstract class AbstractLocaleManager extends Manager {
      * @param stringPlaceholders The placeholders to apply
      */
     public final void sendMessage(CommandSender sender, String messageKey, StringPlaceholders stringPlaceholders) {
-        String prefix = this.getLocaleMessage("prefix");
-        String message = this.getLocaleMessage(messageKey, stringPlaceholders);
-        if (message.isEmpty())
-            return;
-        this.sendParsedMessage(sender, prefix + message);
+        this.sendMessage(sender, messageKey, -1, stringPlaceholders);
+    }
+
+    private void sendMessage(CommandSender sender, String messageKey, int index, StringPlaceholders stringPlaceholders) {
+        LocaleMessages messages = this.getMessages(sender);
+        this.sendParsedMessage(sender, this.getPrefixedMessage(messages, messageKey, index, stringPlaceholders), messages.isPlaceholderFree(messageKey, index, true));
     }
 
     /**
@@ -156,6 +556,101 @@ public abstract class AbstractLocaleManager extends Manager {
         this.sendMessage(sender, messageKey, StringPlaceholders.empty());
     }
 
+    /**
+     * Sends a message to a CommandSender with the prefix with placeholders applied as chat components
+     *
+     * @param sender The CommandSender to send to
+     * @param messageKey The message key of the Locale to send
+     * @param stringPlaceholders The placeholders to apply
+     */
+    public final void sendComponentMessage(CommandSender sender, String messageKey, StringPlaceholders stringPlaceholders) {
+        this.sendComponentMessage(sender, messageKey, -1, stringPlaceholders);
+    }
+
+    private void sendComponentMessage(CommandSender sender, String messageKey, int index, StringPlaceholders stringPlaceholders) {
+        LocaleMessages messages = this.getMessages(sender);
+        boolean placeholderFree = messages.isPlaceholderFree(messageKey, index, true);
+        if (stringPlaceholders.isEmpty()) {
+            // Messages that never change keep their components, as long as PlaceholderAPI leaves them as they are
+            String prefixed = messages.getPrefixed(messageKey, index);
+            if (prefixed != null) {
+                if (prefixed.isEmpty())
+                    return;
+
+                String parsed = this.parsePlaceholders(sender, prefixed, placeholderFree);
+                HexUtils.ColorTemplate template = parsed == prefixed ? messages.getPrefixedTemplate(messageKey, prefixed) : HexUtils.ColorTemplate.compile(parsed);
+                HexUtils.sendMessage(sender, template.renderComponents());
+                return;
+            }
+        }
+
+        this.sendParsedComponents(sender, this.getPrefixedMessage(messages, messageKey, index, stringPlaceholders), placeholderFree);
+    }
+
+    /**
+     * Sends a message to a CommandSender with the prefix as chat components
+     *
+     * @param sender The CommandSender to send to
+     * @param messageKey The message key of the Locale to send
+     */
+    public final void sendComponentMessage(CommandSender sender, String messageKey) {
+        this.sendComponentMessage(sender, messageKey, StringPlaceholders.empty());
+    }
+
+    /**
+     * Sends a message with the prefix with placeholders applied to many CommandSenders.
+     * The message is rendered once for each locale, PlaceholderAPI is only applied for each Player if the message
+     * can contain PlaceholderAPI placeholders.
+     *
+     * @param senders The CommandSenders to send to
+     * @param messageKey The message key of the Locale to send
+     * @param stringPlaceholders The placeholders to apply
+     */
+    public final void broadcast(Collection<? extends CommandSender> senders, String messageKey, StringPlaceholders stringPlaceholders) {
+        this.broadcast(senders, messageKey, -1, stringPlaceholders);
+    }
+
+    private void broadcast(Collection<? extends CommandSender> senders, String messageKey, int index, StringPlaceholders stringPlaceholders) {
+        boolean papiEnabled = PAPIHook.enabled();
+        Map<LocaleMessages, BroadcastMessage> rendered = new IdentityHashMap<>();
+        int skipped = 0;
+        for (CommandSender sender : senders) {
+            LocaleMessages messages = this.getMessages(sender);
+            BroadcastMessage message = rendered.get(messages);
+            if (message == null) {
+                message = new BroadcastMessage(this.getPrefixedMessage(messages, messageKey, index, stringPlaceholders));
+                message.papi = papiEnabled && !messages.isPlaceholderFree(messageKey, index, true) && PAPIHook.containsPlaceholders(message.message);
+                rendered.put(messages, message);
+            }
+
+            if (message.message.isEmpty())
+                continue;
+
+            if (!(sender instanceof Player)) {
+                sender.sendMessage(message.colored);
+            } else if (message.papi) {
+                // Compiled without the template cache since PlaceholderAPI makes the message different for each player
+                sender.sendMessage(HexUtils.ColorTemplate.compile(PAPIHook.applyPlaceholders((Player) sender, message.message)).render());
+            } else {
+                sender.sendMessage(message.colored);
+                skipped++;
+            }
+        }
+
+        if (skipped > 0 && papiEnabled)
+            this.skippedPlaceholderAPICalls.add(skipped);
+    }
+
+    /**
+     * Sends a message with the prefix to many CommandSenders, the message is rendered once
+     *
+     * @param senders The CommandSenders to send to
+     * @param messageKey The message key of the Locale to send
+     */
+    public final void broadcast(Collection<? extends CommandSender> senders, String messageKey) {
+        this.broadcast(senders, messageKey, StringPlaceholders.empty());
+    }
+
     /**
      * Sends a message to a CommandSender with placeholders applied
      *
@@ -164,7 +659,12 @@ public abstract class AbstractLocaleManager extends Manager {
      * @param stringPlaceholders The placeholders to apply
      */
     public final void sendSimpleMessage(CommandSender sender, String messageKey, StringPlaceholders stringPlaceholders) {
-        this.sendParsedMessage(sender, this.getLocaleMessage(messageKey, stringPlaceholders));
+        this.sendSimpleMessage(sender, messageKey, -1, stringPlaceholders);
+    }
+
+    private void sendSimpleMessage(CommandSender sender, String messageKey, int index, StringPlaceholders stringPlaceholders) {
+        LocaleMessages messages = this.getMessages(sender);
+        this.sendParsedMessage(sender, this.getLocaleMessage(messages, messageKey, index, stringPlaceholders), messages.isPlaceholderFree(messageKey, index, false));
     }
 
     /**
@@ -177,6 +677,135 @@ public abstract class AbstractLocaleManager extends Manager {
         this.sendSimpleMessage(sender, messageKey, StringPlaceholders.empty());
     }
 
+    /**
+     * Gets a locale message
+     *
+     * @param messageKey The message to get
+     * @return The locale message
+     */
+    public final String getLocaleMessage(MessageKey messageKey) {
+        return this.getLocaleMessage(messageKey, StringPlaceholders.empty());
+    }
+
+    /**
+     * Gets a locale message with the given placeholders applied
+     *
+     * @param messageKey The message to get
+     * @param stringPlaceholders The placeholders to apply
+     * @return The locale message with the given placeholders applied
+     */
+    public final String getLocaleMessage(MessageKey messageKey, StringPlaceholders stringPlaceholders) {
+        return this.getLocaleMessage(this.messages, messageKey.getKey(), this.indexOf(messageKey), stringPlaceholders);
+    }
+
+    /**
+     * Gets a locale message in the language of a CommandSender with the given placeholders applied
+     *
+     * @param sender The CommandSender the message is for
+     * @param messageKey The message to get
+     * @param stringPlaceholders The placeholders to apply
+     * @return The locale message with the given placeholders applied
+     */
+    public final String getLocaleMessage(CommandSender sender, MessageKey messageKey, StringPlaceholders stringPlaceholders) {
+        return this.getLocaleMessage(this.getMessages(sender), messageKey.getKey(), this.indexOf(messageKey), stringPlaceholders);
+    }
+
+    /**
+     * Gets a locale message in the language of a CommandSender
+     *
+     * @param sender The CommandSender the message is for
+     * @param messageKey The message to get
+     * @return The locale message
+     */
+    public final String getLocaleMessage(CommandSender sender, MessageKey messageKey) {
+        return this.getLocaleMessage(sender, messageKey, StringPlaceholders.empty());
+    }
+
+    /**
+     * Sends a message to a CommandSender with the prefix with placeholders applied
+     *
+     * @param sender The CommandSender to send to
+     * @param messageKey The message to send
+     * @param stringPlaceholders The placeholders to apply
+     */
+    public final void sendMessage(CommandSender sender, MessageKey messageKey, StringPlaceholders stringPlaceholders) {
+        this.sendMessage(sender, messageKey.getKey(), this.indexOf(messageKey), stringPlaceholders);
+    }
+
+    /**
+     * Sends a message to a CommandSender with the prefix
+     *
+     * @param sender The CommandSender to send to
+     * @param messageKey The message to send
+     */
+    public final void sendMessage(CommandSender sender, MessageKey messageKey) {
+        this.sendMessage(sender, messageKey, StringPlaceholders.empty());
+    }
+
+    /**
+     * Sends a message to a CommandSender with the prefix with placeholders applied as chat components
+     *
+     * @param sender The CommandSender to send to
+     * @param messageKey The message to send
+     * @param stringPlaceholders The placeholders to apply
+     */
+    public final void sendComponentMessage(CommandSender sender, MessageKey messageKey, StringPlaceholders stringPlaceholders) {
+        this.sendComponentMessage(sender, messageKey.getKey(), this.indexOf(messageKey), stringPlaceholders);
+    }
+
+    /**
+     * Sends a message to a CommandSender with the prefix as chat components
+     *
+     * @param sender The CommandSender to send to
+     * @param messageKey The message to send
+     */
+    public final void sendComponentMessage(CommandSender sender, MessageKey messageKey) {
+        this.sendComponentMessage(sender, messageKey, StringPlaceholders.empty());
+    }
+
+    /**
+     * Sends a message with the prefix with placeholders applied to many CommandSenders, the message is rendered once
+     * for each locale
+     *
+     * @param senders The CommandSenders to send to
+     * @param messageKey The message to send
+     * @param stringPlaceholders The placeholders to apply
+     */
+    public final void broadcast(Collection<? extends CommandSender> senders, MessageKey messageKey, StringPlaceholders stringPlaceholders) {
+        this.broadcast(senders, messageKey.getKey(), this.indexOf(messageKey), stringPlaceholders);
+    }
+
+    /**
+     * Sends a message with the prefix to many CommandSenders, the message is rendered once for each locale
+     *
+     * @param senders The CommandSenders to send to
+     * @param messageKey The message to send
+     */
+    public final void broadcast(Collection<? extends CommandSender> senders, MessageKey messageKey) {
+        this.broadcast(senders, messageKey, StringPlaceholders.empty());
+    }
+
+    /**
+     * Sends a message to a CommandSender with placeholders applied
+     *
+     * @param sender The CommandSender to send to
+     * @param messageKey The message to send
+     * @param stringPlaceholders The placeholders to apply
+     */
+    public final void sendSimpleMessage(CommandSender sender, MessageKey messageKey, StringPlaceholders stringPlaceholders) {
+        this.sendSimpleMessage(sender, messageKey.getKey(), this.indexOf(messageKey), stringPlaceholders);
+    }
+
+    /**
+     * Sends a message to a CommandSender
+     *
+     * @param sender The CommandSender to send to
+     * @param messageKey The message to send
+     */
+    public final void sendSimpleMessage(CommandSender sender, MessageKey messageKey) {
+        this.sendSimpleMessage(sender, messageKey, StringPlaceholders.empty());
+    }
+
     /**
      * Sends a custom message to a CommandSender
      *
@@ -195,9 +824,49 @@ public abstract class AbstractLocaleManager extends Manager {
      * @return A placeholder-replaced message
      */
     protected final String parsePlaceholders(CommandSender sender, String message) {
-        if (sender instanceof Player)
-            return PAPIHook.applyPlaceholders((Player) sender, message);
-        return message;
+        return this.parsePlaceholders(sender, message, false);
+    }
+
+    /**
+     * Replaces PlaceholderAPI placeholders if PlaceholderAPI is enabled and the message can contain any
+     *
+     * @param sender The potential Player to replace with
+     * @param message The message
+     * @param placeholderFree true if the message is already known not to contain PlaceholderAPI placeholders
+     * @return A placeholder-replaced message
+     */
+    private String parsePlaceholders(CommandSender sender, String message, boolean placeholderFree) {
+        if (!(sender instanceof Player) || !PAPIHook.enabled())
+            return message;
+
+        if (placeholderFree || !PAPIHook.containsPlaceholders(message)) {
+            this.skippedPlaceholderAPICalls.increment();
+            return message;
+        }
+        return PAPIHook.applyPlaceholders((Player) sender, message);
+    }
+
+    /**
+     * Gets the keys of the messages that were requested but are missing from the locale file since the last reload,
+     * with how many times each one was requested
+     *
+     * @return the number of requests by the missing keys, the most requested first
+     */
+    public final Map<String, Long> getMissingMessages() {
+        List<Map.Entry<String, MissingMessage>> entries = new ArrayList<>(this.messages.missing.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, MissingMessage> x) -> x.getValue().hits.sum()).reversed());
+
+        Map<String, Long> missingMessages = new LinkedHashMap<>();
+        for (Map.Entry<String, MissingMessage> entry : entries)
+            missingMessages.put(entry.getKey(), entry.getValue().hits.sum());
+        return Collections.unmodifiableMap(missingMessages);
+    }
+
+    /**
+     * @return the number of times PlaceholderAPI wasn't called for a Player because the message had no placeholders
+     */
+    public final long getSkippedPlaceholderAPICalls() {
+        return this.skippedPlaceholderAPICalls.sum();
     }
 
     /**
@@ -207,8 +876,195 @@ public abstract class AbstractLocaleManager extends Manager {
      * @param message The message
      */
     protected final void sendParsedMessage(CommandSender sender, String message) {
+        this.sendParsedMessage(sender, message, false);
+    }
+
+    private void sendParsedMessage(CommandSender sender, String message, boolean placeholderFree) {
+        // Compiled without the template cache since the message has already been rendered for this sender
         if (!message.isEmpty())
-            HexUtils.sendMessage(sender, this.parsePlaceholders(sender, message));
+            sender.sendMessage(HexUtils.ColorTemplate.compile(this.parsePlaceholders(sender, message, placeholderFree)).render());
+    }
+
+    /**
+     * Sends a message with placeholders and colors parsed to a CommandSender as chat components
+     *
+     * @param sender The sender to send the message to
+     * @param message The message
+     */
+    protected final void sendParsedComponents(CommandSender sender, String message) {
+        this.sendParsedComponents(sender, message, false);
+    }
+
+    private void sendParsedComponents(CommandSender sender, String message, boolean placeholderFree) {
+        if (!message.isEmpty())
+            HexUtils.sendMessage(sender, HexUtils.ColorTemplate.compile(this.parsePlaceholders(sender, message, placeholderFree)).renderComponents());
+    }
+
+    /**
+     * A message missing from the locale file
+     */
+    private static final class MissingMessage {
+
+        private final String message;
+        private final LongAdder hits = new LongAdder();
+
+        private MissingMessage(String message) {
+            this.message = message;
+        }
+
+    }
+
+    /**
+     * A broadcast message rendered for one locale
+     */
+    private static final class BroadcastMessage {
+
+        private final String message;
+        private final String colored;
+        private boolean papi;
+
+        private BroadcastMessage(String message) {
+            this.message = message;
+            this.colored = message.isEmpty() ? message : HexUtils.ColorTemplate.compile(message).render();
+        }
+
+    }
+
+    /**
+     * The locale files a player's client language can be matched to, found on reload
+     */
+    private static final class LocaleFiles {
+
+        private static final LocaleFiles EMPTY = new LocaleFiles();
+
+        private final Map<String, File> files;
+        private final Map<String, String> languages;
+        private final String defaultLocale;
+
+        private LocaleFiles() {
+            this.files = Collections.emptyMap();
+            this.languages = Collections.emptyMap();
+            this.defaultLocale = "";
+        }
+
+        private LocaleFiles(File localeDirectory, File defaultFile) {
+            this.files = new HashMap<>();
+            this.languages = new HashMap<>();
+            this.defaultLocale = getLocaleName(defaultFile);
+
+            File[] files = localeDirectory.listFiles((directory, name) -> name.endsWith(".lang"));
+            if (files != null) {
+                Arrays.sort(files);
+                for (File file : files) {
+                    String locale = getLocaleName(file);
+                    this.files.put(locale, file);
+
+                    // en_us and en_gb both fall back to whichever English locale comes first
+                    int separator = locale.indexOf('_');
+                    this.languages.putIfAbsent(separator == -1 ? locale : locale.substring(0, separator), locale);
+                }
+            }
+        }
+
+        /**
+         * Matches a client language to a locale file, first by the full name, then by the language alone, and
+         * otherwise the default locale
+         *
+         * @param clientLocale The language of the client, such as en_us
+         * @return the lowercase name of the locale file to use
+         */
+        private String resolve(String clientLocale) {
+            String locale = clientLocale.toLowerCase(java.util.Locale.ROOT).replace('-', '_');
+            if (this.files.containsKey(locale))
+                return locale;
+
+            int separator = locale.indexOf('_');
+            String language = this.languages.get(separator == -1 ? locale : locale.substring(0, separator));
+            return language != null ? language : this.defaultLocale;
+        }
+
+        private static String getLocaleName(File file) {
+            String name = file.getName();
+            return name.substring(0, name.length() - ".lang".length()).toLowerCase(java.util.Locale.ROOT);
+        }
+
+    }
+
+    /**
+     * The compiled messages of a locale, replaced as a whole on reload
+     */
+    private static final class LocaleMessages {
+
+        private static final LocaleMessages EMPTY = new LocaleMessages(Collections.emptyMap(), Collections.emptyMap(), Collections.emptySet(), new MessageKey[0]);
+
+        private final Map<String, MessageTemplate> templates;
+        private final Map<String, String> prefixed;
+        private final Set<String> placeholderFree;
+        private final Map<String, MissingMessage> missing = new ConcurrentHashMap<>();
+        private final Map<String, HexUtils.ColorTemplate> prefixedTemplates = new ConcurrentHashMap<>();
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        // The same messages by the ordinal of their MessageKey
+        private final MessageTemplate[] indexedTemplates;
+        private final String[] indexedPrefixed;
+        private final boolean[] indexedPlaceholderFree;
+        private final boolean prefixPlaceholderFree;
+
+        private LocaleMessages(Map<String, MessageTemplate> templates, Map<String, String> prefixed, Set<String> placeholderFree, MessageKey[] messageKeys) {
+            this.templates = templates;
+            this.prefixed = prefixed;
+            this.placeholderFree = placeholderFree;
+
+            this.indexedTemplates = new MessageTemplate[messageKeys.length];
+            this.indexedPrefixed = new String[messageKeys.length];
+            this.indexedPlaceholderFree = new boolean[messageKeys.length];
+            for (int i = 0; i < messageKeys.length; i++) {
+                String key = messageKeys[i].getKey();
+                this.indexedTemplates[i] = templates.get(key);
+                this.indexedPrefixed[i] = prefixed.get(key);
+                this.indexedPlaceholderFree[i] = placeholderFree.contains(key);
+            }
+            this.prefixPlaceholderFree = placeholderFree.contains("prefix");
+        }
+
+        /**
+         * @param messageKey The key of the message
+         * @param index The index of the message, or -1 to look it up by its key
+         * @return the compiled message, or null if there is none
+         */
+        private MessageTemplate getTemplate(String messageKey, int index) {
+            return index != -1 ? this.indexedTemplates[index] : this.templates.get(messageKey);
+        }
+
+        /**
+         * @param messageKey The key of the message
+         * @param index The index of the message, or -1 to look it up by its key
+         * @return the rendered message with the prefix, or null if it has to be rendered when sent
+         */
+        private String getPrefixed(String messageKey, int index) {
+            return index != -1 ? this.indexedPrefixed[index] : this.prefixed.get(messageKey);
+        }
+
+        /**
+         * @param messageKey The key of the message
+         * @param prefixed The message rendered with the prefix in front
+         * @return the compiled message with the prefix, which keeps the components it is sent as
+         */
+        private HexUtils.ColorTemplate getPrefixedTemplate(String messageKey, String prefixed) {
+            return this.prefixedTemplates.computeIfAbsent(messageKey, x -> HexUtils.ColorTemplate.compile(prefixed));
+        }
+
+        /**
+         * @param messageKey The key of the message
+         * @param index The index of the message, or -1 to look it up by its key
+         * @param prefixed true if the message is sent with the prefix, otherwise false
+         * @return true if the message can't contain PlaceholderAPI placeholders whatever is filled in, otherwise false
+         */
+        private boolean isPlaceholderFree(String messageKey, int index, boolean prefixed) {
+            boolean placeholderFree = index != -1 ? this.indexedPlaceholderFree[index] : this.placeholderFree.contains(messageKey);
+            return placeholderFree && (!prefixed || this.prefixPlaceholderFree);
+        }
+
     }
 
 }
@@ -0,0 +1,134 @@
+package xyz.akiradev.pluginutils.manager;
+
+import org.bukkit.Bukkit;
+import xyz.akiradev.pluginutils.PluginUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the config.yml and the /locale folder, applying changes to them without reloading the plugin.
+ * Changed files are parsed off the main thread once no more changes have come in for a moment, then swapped in on
+ * the main thread.
+ */
+public class FileWatchManager extends Manager {
+
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    protected final PluginUtils plugin;
+
+    private WatchService watchService;
+    private Thread thread;
+
+    public FileWatchManager(PluginUtils plugin) {
+        super(plugin);
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void reload() {
+        this.disable();
+
+        if (!this.plugin.hasConfigurationManager())
+            return;
+
+        AbstractConfigurationManager configurationManager = this.plugin.getManager(AbstractConfigurationManager.class);
+        if (!configurationManager.getSettings().get("watch-files").getBoolean())
+            return;
+
+        AbstractLocaleManager localeManager = this.plugin.hasLocaleManager() ? this.plugin.getManager(AbstractLocaleManager.class) : null;
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            this.register(watchService, this.plugin.getDataFolder());
+            if (localeManager != null)
+                this.register(watchService, new File(this.plugin.getDataFolder(), "locale"));
+
+            this.watchService = watchService;
+            this.thread = new Thread(() -> this.watch(watchService, configurationManager, localeManager), this.plugin.getName() + " File Watcher");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        } catch (IOException e) {
+            this.plugin.getLogger().warning("Unable to watch the plugin files for changes: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void disable() {
+        if (this.watchService == null)
+            return;
+
+        try {
+            this.watchService.close();
+        } catch (IOException ignored) { }
+        this.thread.interrupt();
+        this.watchService = null;
+        this.thread = null;
+    }
+
+    private void register(WatchService watchService, File directory) throws IOException {
+        if (directory.isDirectory())
+            directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Collects changed files until none have changed for {@link #DEBOUNCE_MILLIS}, then reloads them.
+     * Runs until the WatchService is closed.
+     */
+    private void watch(WatchService watchService, AbstractConfigurationManager configurationManager, AbstractLocaleManager localeManager) {
+        Set<File> changedFiles = new LinkedHashSet<>();
+        try {
+            while (true) {
+                WatchKey key = changedFiles.isEmpty() ? watchService.take() : watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    this.reloadFiles(changedFiles, configurationManager, localeManager);
+                    changedFiles.clear();
+                    continue;
+                }
+
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents())
+                    if (event.kind() != StandardWatchEventKinds.OVERFLOW)
+                        changedFiles.add(directory.resolve((Path) event.context()).toFile());
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // The watcher was stopped
+        }
+    }
+
+    /**
+     * Parses the changed files and swaps them in on the main thread
+     *
+     * @param changedFiles The files that changed
+     */
+    private void reloadFiles(Set<File> changedFiles, AbstractConfigurationManager configurationManager, AbstractLocaleManager localeManager) {
+        List<Runnable> swaps = new ArrayList<>();
+        for (File file : changedFiles) {
+            try {
+                Runnable swap = configurationManager.prepareReload(file);
+                if (swap == null && localeManager != null)
+                    swap = localeManager.prepareReload(file);
+                if (swap != null)
+                    swaps.add(swap);
+            } catch (Exception e) {
+                this.plugin.getLogger().warning("Unable to reload " + file.getName() + ": " + e.getMessage());
+            }
+        }
+
+        if (!swaps.isEmpty() && this.plugin.isEnabled())
+            Bukkit.getScheduler().runTask(this.plugin, () -> swaps.forEach(Runnable::run));
+    }
+
+}
@@ -0,0 +1,232 @@
+package xyz.akiradev.pluginutils.manager;
+
+import xyz.akiradev.pluginutils.config.CommentedFileConfiguration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A binary snapshot of the messages in a .lang file, so the file only has to be parsed as YAML again when it changes.
+ * The snapshot records the size, last modified time and SHA-256 hash of the file it was made from.
+ * A manifest also records the hashes each locale file and its defaults had when the defaults were last merged in.
+ */
+final class LocaleCache {
+
+    private static final int MAGIC = 0x504C4C43;
+    private static final int VERSION = 2;
+
+    private LocaleCache() {
+
+    }
+
+    /**
+     * Reads the messages of a locale file from its snapshot if the file hasn't changed since it was made
+     *
+     * @param localeFile The .lang file
+     * @param cacheFile  The snapshot of the .lang file
+     * @return the messages by their keys, or null if there is no valid snapshot
+     */
+    static Map<String, String> read(File localeFile, File cacheFile) {
+        if (!cacheFile.isFile())
+            return null;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile.toPath())))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                return null;
+
+            // Compare the cheap values first so a changed file is usually noticed without reading it
+            if (input.readLong() != localeFile.length() || input.readLong() != localeFile.lastModified())
+                return null;
+
+            byte[] hash = new byte[32];
+            input.readFully(hash);
+            if (!Arrays.equals(hash, hash(localeFile)))
+                return null;
+
+            int count = input.readInt();
+            long limit = cacheFile.length();
+            if (count < 0 || count > limit)
+                return null;
+
+            Map<String, String> messages = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++)
+                messages.put(readString(input, limit), readString(input, limit));
+            return messages;
+        } catch (IOException e) {
+            return null; // A damaged snapshot is made again from the .lang file
+        }
+    }
+
+    /**
+     * Writes the snapshot of a locale file
+     *
+     * @param localeFile The .lang file
+     * @param cacheFile  The snapshot of the .lang file to write
+     * @param messages   The messages of the .lang file by their keys
+     * @throws IOException if the snapshot couldn't be written
+     */
+    static void write(File localeFile, File cacheFile, Map<String, String> messages) throws IOException {
+        long length = localeFile.length();
+        long lastModified = localeFile.lastModified();
+        byte[] hash = hash(localeFile);
+
+        File directory = cacheFile.getParentFile();
+        if (!directory.exists())
+            directory.mkdirs();
+
+        // Write to another file first so a snapshot is never seen half written
+        File tempFile = new File(directory, cacheFile.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(length);
+            output.writeLong(lastModified);
+            output.write(hash);
+            output.writeInt(messages.size());
+            for (Map.Entry<String, String> message : messages.entrySet()) {
+                writeString(output, message.getKey());
+                writeString(output, message.getValue());
+            }
+        }
+
+        Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Gets the messages of a locale file, every key that isn't a section or a comment with its value as a string
+     *
+     * @param configuration The locale file
+     * @return the messages by their keys
+     */
+    static Map<String, String> getMessages(CommentedFileConfiguration configuration) {
+        Map<String, String> messages = new LinkedHashMap<>();
+        for (String key : configuration.getKeys(true)) {
+            // Comments inside sections are stored as keys under the section
+            if (key.startsWith("_COMMENT_", key.lastIndexOf('.') + 1) || configuration.isConfigurationSection(key))
+                continue;
+
+            String message = configuration.getString(key);
+            if (message != null)
+                messages.put(key, message);
+        }
+        return messages;
+    }
+
+    /**
+     * Reads the manifest of the locale files, the hashes the locale files and their defaults had when they were
+     * last merged
+     *
+     * @param manifestFile The manifest file
+     * @return the hashes by the names of the locale files
+     */
+    static Properties readManifest(File manifestFile) {
+        Properties manifest = new Properties();
+        if (manifestFile.isFile()) {
+            try (InputStream input = Files.newInputStream(manifestFile.toPath())) {
+                manifest.load(input);
+            } catch (IOException | IllegalArgumentException e) {
+                manifest.clear(); // Every locale is merged again and a new manifest is written
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest of the locale files
+     *
+     * @param manifestFile The manifest file
+     * @param manifest     The hashes by the names of the locale files
+     * @throws IOException if the manifest couldn't be written
+     */
+    static void writeManifest(File manifestFile, Properties manifest) throws IOException {
+        File directory = manifestFile.getParentFile();
+        if (!directory.exists())
+            directory.mkdirs();
+
+        try (OutputStream output = Files.newOutputStream(manifestFile.toPath())) {
+            manifest.store(output, "Hashes of the locale files and their defaults when they were last merged, don't edit");
+        }
+    }
+
+    /**
+     * @param localeFile The locale file
+     * @return the SHA-256 hash of the locale file in hex
+     * @throws IOException if the locale file couldn't be read
+     */
+    static String hashFile(File localeFile) throws IOException {
+        return toHex(hash(localeFile));
+    }
+
+    /**
+     * @param defaultValues The default values of a locale
+     * @return the SHA-256 hash of the default values in hex
+     */
+    static String hashDefaults(Map<String, Object> defaultValues) {
+        MessageDigest digest = newDigest();
+        for (Map.Entry<String, Object> entry : defaultValues.entrySet()) {
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every Java platform is required to support SHA-256
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return builder.toString();
+    }
+
+    private static byte[] hash(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = input.read(buffer)) != -1)
+                digest.update(buffer, 0, read);
+        }
+        return digest.digest();
+    }
+
+    private static String readString(DataInputStream input, long limit) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > limit)
+            throw new IOException("Invalid string length " + length);
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+}
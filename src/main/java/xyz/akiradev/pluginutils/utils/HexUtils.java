@@ -5,26 +5,44 @@
 package xyz.akiradev.pluginutils.utils;
 
 import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.TextComponent;
 import org.bukkit.command.CommandSender;
 
 import java.awt.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class HexUtils {
     private static final int CHARS_UNTIL_LOOP = 30;
-    private static final Pattern RAINBOW_PATTERN = Pattern.compile("<(?<type>rainbow|r)(#(?<speed>\\d+))?(:(?<saturation>\\d*\\.?\\d+))?(:(?<brightness>\\d*\\.?\\d+))?(:(?<loop>l|L|loop))?>");
-    private static final Pattern GRADIENT_PATTERN = Pattern.compile("<(?<type>gradient|g)(#(?<speed>\\d+))?(?<hex>(:#([A-Fa-f0-9]{6}|[A-Fa-f0-9]{3})){2,})(:(?<loop>l|L|loop))?>");
-    private static final List<Pattern> HEX_PATTERNS = Arrays.asList(
-            Pattern.compile("<#([A-Fa-f0-9]){6}>"),   // <#FFFFFF>
-            Pattern.compile("\\{#([A-Fa-f0-9]){6}}"), // {#FFFFFF}
-            Pattern.compile("&#([A-Fa-f0-9]){6}"),    // &#FFFFFF
-            Pattern.compile("#([A-Fa-f0-9]){6}")      // #FFFFFF
-    );
+    private static final String LEGACY_CODES = "0123456789AaBbCcDdEeFfKkLlMmNnOoRrXx";
+
+    private static final int RAINBOW = 1;
+    private static final int GRADIENT = 1 << 1;
+    private static final int HEX = 1 << 2;
+    private static final int LEGACY = 1 << 3;
+    private static final int ALL = RAINBOW | GRADIENT | HEX | LEGACY;
+
+    private static final int BOLD = 1;
+    private static final int ITALIC = 1 << 1;
+    private static final int UNDERLINED = 1 << 2;
+    private static final int STRIKETHROUGH = 1 << 3;
+    private static final int OBFUSCATED = 1 << 4;
+
+    private static volatile int parallelThreshold = 256;
 
     private static final Pattern STOP = Pattern.compile(
             "<(rainbow|r)(#(\\d+))?(:(\\d*\\.?\\d+))?(:(\\d*\\.?\\d+))?(:(l|L|loop))?>|" +
@@ -42,28 +60,33 @@ public class HexUtils {
     }
 
     /**
-     * Gets a capture group from a regex Matcher if it exists
+     * Sends a CommandSender a colored message
      *
-     * @param matcher The Matcher
-     * @param group The group name
-     * @return the capture group value, or null if not found
+     * @param sender  The CommandSender to send to
+     * @param message The message to send
      */
-    private static String getCaptureGroup(Matcher matcher, String group) {
-        try {
-            return matcher.group(group);
-        } catch (IllegalStateException | IllegalArgumentException e) {
-            return null;
-        }
+    public static void sendMessage(CommandSender sender, String message) {
+        sender.sendMessage(colorify(message));
     }
 
     /**
-     * Sends a CommandSender a colored message
+     * Sends a CommandSender chat components
+     *
+     * @param sender     The CommandSender to send to
+     * @param components The components to send
+     */
+    public static void sendMessage(CommandSender sender, BaseComponent... components) {
+        sender.spigot().sendMessage(components);
+    }
+
+    /**
+     * Sends a CommandSender a colored message as chat components
      *
      * @param sender  The CommandSender to send to
      * @param message The message to send
      */
-    public static void sendMessage(CommandSender sender, String message) {
-        sender.sendMessage(colorify(message));
+    public static void sendComponentMessage(CommandSender sender, String message) {
+        sendMessage(sender, colorifyToComponents(message));
     }
 
     /**
@@ -73,196 +96,751 @@ public class HexUtils {
      * @return A color-replaced message
      */
     public static String colorify(String message) {
-        String parsed = message;
-        parsed = parseRainbow(parsed);
-        parsed = parseGradients(parsed);
-        parsed = parseHex(parsed);
-        parsed = parseLegacy(parsed);
-        return parsed;
+        return ColorTemplate.of(message).render();
+    }
+
+    /**
+     * Parses gradients, hex colors, and legacy color codes for each line
+     *
+     * @param messages The lines, such as an item lore
+     * @return A new list of color-replaced lines
+     */
+    public static List<String> colorify(List<String> messages) {
+        return colorify(messages, false);
+    }
+
+    /**
+     * Parses gradients, hex colors, and legacy color codes for each line
+     *
+     * @param messages The lines, such as an item lore
+     * @param parallel true to split batches of at least {@link #getParallelThreshold()} lines over the common
+     *                 fork-join pool, otherwise false
+     * @return A new list of color-replaced lines
+     */
+    public static List<String> colorify(List<String> messages, boolean parallel) {
+        return new ArrayList<>(Arrays.asList(colorify(messages.toArray(new String[0]), parallel)));
+    }
+
+    /**
+     * Parses gradients, hex colors, and legacy color codes for each line
+     *
+     * @param messages The lines, such as an item lore
+     * @return A new array of color-replaced lines
+     */
+    public static String[] colorify(String[] messages) {
+        return colorify(messages, false);
+    }
+
+    /**
+     * Parses gradients, hex colors, and legacy color codes for each line
+     *
+     * @param messages The lines, such as an item lore
+     * @param parallel true to split batches of at least {@link #getParallelThreshold()} lines over the common
+     *                 fork-join pool, otherwise false
+     * @return A new array of color-replaced lines
+     */
+    public static String[] colorify(String[] messages, boolean parallel) {
+        String[] colored = new String[messages.length];
+        int threshold = parallelThreshold;
+        if (!parallel || messages.length < threshold) {
+            colorify(messages, colored, 0, messages.length);
+            return colored;
+        }
+
+        // Each task takes a run of at least threshold lines so it can reuse one buffer
+        int tasks = messages.length / threshold;
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            int start = (int) ((long) messages.length * task / tasks);
+            int end = (int) ((long) messages.length * (task + 1) / tasks);
+            colorify(messages, colored, start, end);
+        });
+        return colored;
+    }
+
+    private static void colorify(String[] messages, String[] colored, int start, int end) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = start; i < end; i++)
+            colored[i] = ColorTemplate.of(messages[i]).render(builder);
+    }
+
+    /**
+     * @return the minimum number of lines a parallel bulk colorify hands to each task
+     */
+    public static int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the minimum number of lines a parallel bulk colorify hands to each task.
+     * Batches smaller than this are always colored on the calling thread.
+     *
+     * @param threshold The minimum number of lines, at least 1
+     */
+    public static void setParallelThreshold(int threshold) {
+        if (threshold < 1)
+            throw new IllegalArgumentException("Threshold must be at least 1");
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * Parses gradients, hex colors, and legacy color codes into chat components
+     *
+     * @param message The message
+     * @return The colored message as components, one for each run of text sharing a style
+     */
+    public static BaseComponent[] colorifyToComponents(String message) {
+        return ColorTemplate.of(message).renderComponents();
+    }
+
+    /**
+     * Parses gradients, hex colors, and legacy color codes, appending the result to an Appendable.
+     * A StringBuilder has the message rendered straight into it.
+     *
+     * @param message The message
+     * @param out     The Appendable to append the color-replaced message to
+     * @throws UncheckedIOException if the Appendable fails to append
+     */
+    public static void colorify(CharSequence message, Appendable out) {
+        ColorTemplate template = ColorTemplate.of(message.toString());
+        if (out instanceof StringBuilder) {
+            template.appendTo((StringBuilder) out);
+        } else {
+            append(out, template.render());
+        }
     }
 
     public static String parseRainbow(String message) {
-        String parsed = message;
+        return parse(message, RAINBOW);
+    }
+
+    public static void parseRainbow(CharSequence message, Appendable out) {
+        parse(message, RAINBOW, out);
+    }
 
-        Matcher matcher = RAINBOW_PATTERN.matcher(parsed);
-        while (matcher.find()) {
-            StringBuilder parsedRainbow = new StringBuilder();
+    public static String parseGradients(String message) {
+        return parse(message, GRADIENT);
+    }
 
-            // Possible parameters and their defaults
-            int speed = -1;
-            float saturation = 1.0F;
-            float brightness = 1.0F;
-            boolean looping = getCaptureGroup(matcher, "looping") != null;
+    public static void parseGradients(CharSequence message, Appendable out) {
+        parse(message, GRADIENT, out);
+    }
 
-            String speedGroup = getCaptureGroup(matcher, "speed");
-            if (speedGroup != null) {
-                try {
-                    speed = Integer.parseInt(speedGroup);
-                } catch (NumberFormatException ignored) { }
-            }
+    public static String parseHex(String message) {
+        return parse(message, HEX);
+    }
 
-            String saturationGroup = getCaptureGroup(matcher, "saturation");
-            if (saturationGroup != null) {
-                try {
-                    saturation = Float.parseFloat(saturationGroup);
-                } catch (NumberFormatException ignored) { }
-            }
+    public static void parseHex(CharSequence message, Appendable out) {
+        parse(message, HEX, out);
+    }
 
-            String brightnessGroup = getCaptureGroup(matcher, "brightness");
-            if (brightnessGroup != null) {
-                try {
-                    brightness = Float.parseFloat(brightnessGroup);
-                } catch (NumberFormatException ignored) { }
+    public static String parseLegacy(String message) {
+        return ChatColor.translateAlternateColorCodes('&', message);
+    }
+
+    public static void parseLegacy(CharSequence message, Appendable out) {
+        try {
+            int length = message.length();
+            for (int i = 0; i < length; i++) {
+                char c = message.charAt(i);
+                if (c == '&' && i + 1 < length && ChatColor.ALL_CODES.indexOf(message.charAt(i + 1)) > -1) {
+                    out.append(ChatColor.COLOR_CHAR).append(Character.toLowerCase(message.charAt(++i)));
+                } else {
+                    out.append(c);
+                }
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            int stop = findStop(parsed, matcher.end());
-            String content = parsed.substring(matcher.end(), stop);
-            int contentLength = content.length();
-            char[] chars = content.toCharArray();
-            for (int i = 0; i < chars.length - 1; i++)
-                if (chars[i] == '&' && "KkLlMmNnOoRr".indexOf(chars[i + 1]) > -1)
-                    contentLength -= 2;
+    /**
+     * Runs the enabled color parsers over a message, appending the result to an Appendable
+     *
+     * @param message The message
+     * @param types   The color types to parse
+     * @param out     The Appendable to append the color-replaced message to
+     */
+    private static void parse(CharSequence message, int types, Appendable out) {
+        if (out instanceof StringBuilder) {
+            parse(message.toString(), types, (StringBuilder) out, null);
+        } else {
+            append(out, parse(message.toString(), types));
+        }
+    }
 
-            int length = looping ? Math.min(contentLength, CHARS_UNTIL_LOOP) : contentLength;
+    private static void append(Appendable out, CharSequence text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            ColorGenerator rainbow;
-            if (speed == -1) {
-                rainbow = new Rainbow(length, saturation, brightness);
-            } else {
-                rainbow = new AnimatedRainbow(length, saturation, brightness, speed);
-            }
-
-            String compoundedFormat = ""; // Carry the format codes through the rainbow gradient
-            for (int i = 0; i < chars.length; i++) {
-                char c = chars[i];
-                if (c == '&' && i + 1 < chars.length) {
-                    char next = chars[i + 1];
-                    org.bukkit.ChatColor color = org.bukkit.ChatColor.getByChar(next);
-                    if (color != null && color.isFormat()) {
-                        compoundedFormat += String.valueOf(ChatColor.COLOR_CHAR) + next;
-                        i++; // Skip next character
+    /**
+     * Runs the enabled color parsers over a message
+     *
+     * @param message The message
+     * @param types   The color types to parse
+     * @return A color-replaced message
+     */
+    private static String parse(String message, int types) {
+        StringBuilder builder = new StringBuilder(message.length());
+        parse(message, types, builder, null);
+        return builder.toString();
+    }
+
+    /**
+     * Scans a message from left to right, replacing rainbows, gradients, hex colors, and legacy color codes as they
+     * are found. The output matches running each parser over the message in turn, in the order rainbow, gradient,
+     * hex, then legacy.
+     *
+     * @param message  The message
+     * @param types    The color types to parse
+     * @param builder  The StringBuilder to write the parsed message to
+     * @param segments The template segments to split animated colors into, or null to render them immediately
+     * @return false if the animated colors could not be split into segments, otherwise true
+     */
+    private static boolean parse(String message, int types, StringBuilder builder, List<ColorTemplate.Segment> segments) {
+        int start = builder.length();
+        int lastSegmentChar = -1; // The last character of the most recent segment, if nothing was written after it
+        ColorStops stops = new ColorStops(message);
+        int length = message.length();
+        int index = 0;
+        while (index < length) {
+            char c = message.charAt(index);
+            switch (c) {
+                case '<': {
+                    ColorTag tag;
+                    if ((types & RAINBOW) != 0 && (tag = readRainbow(message, index)) != null) {
+                        int stop = stops.after(tag.end);
+                        lastSegmentChar = appendTag(builder, segments, tag, message.substring(tag.end, stop).toCharArray(), lastSegmentChar);
+                        index = stop;
+                        continue;
+                    }
+
+                    if ((types & GRADIENT) != 0 && (tag = readGradient(message, index)) != null) {
+                        int stop = stops.after(tag.end);
+                        if ((types & RAINBOW) != 0 && (readRainbow(message, tag.end) != null || isEmptyRainbow(stops, stop))) {
+                            // Rainbows are colored before the gradient looks for its stop, so continue with the rest
+                            // of the message the way the rainbow parser leaves it
+                            StringBuilder rest = new StringBuilder();
+                            List<ColorTemplate.Segment> restSegments = segments != null ? new ArrayList<>() : null;
+                            if (!parse(message.substring(tag.end), RAINBOW, rest, restSegments) || (restSegments != null && !restSegments.isEmpty()))
+                                return false;
+
+                            message = rest.toString();
+                            length = message.length();
+                            types &= ~RAINBOW;
+                            stops = new ColorStops(message);
+                            index = stops.after(0);
+                            lastSegmentChar = appendTag(builder, segments, tag, message.substring(0, index).toCharArray(), lastSegmentChar);
+                            continue;
+                        }
+
+                        lastSegmentChar = appendTag(builder, segments, tag, message.substring(tag.end, stop).toCharArray(), lastSegmentChar);
+                        index = stop;
+                        continue;
+                    }
+
+                    if ((types & HEX) != 0 && isHex(message, index + 2) && charAt(message, index + 1) == '#' && charAt(message, index + 8) == '>') {
+                        appendHex(builder, message, index + 1);
+                        lastSegmentChar = -1;
+                        index += 9;
                         continue;
                     }
+                    break;
                 }
-                parsedRainbow.append(rainbow.nextChatColor()).append(compoundedFormat).append(c);
+                case '{':
+                    if ((types & HEX) != 0 && isHex(message, index + 2) && charAt(message, index + 1) == '#' && charAt(message, index + 8) == '}') {
+                        appendHex(builder, message, index + 1);
+                        lastSegmentChar = -1;
+                        index += 9;
+                        continue;
+                    }
+                    break;
+                case '&':
+                    if ((types & HEX) != 0 && isHex(message, index + 2) && charAt(message, index + 1) == '#') {
+                        appendHex(builder, message, index + 1);
+                        lastSegmentChar = -1;
+                        index += 8;
+                        continue;
+                    }
+
+                    if ((types & LEGACY) != 0 && index + 1 < length && LEGACY_CODES.indexOf(message.charAt(index + 1)) > -1) {
+                        builder.append(ChatColor.COLOR_CHAR).append(Character.toLowerCase(message.charAt(index + 1)));
+                        lastSegmentChar = -1;
+                        index += 2;
+                        continue;
+                    }
+                    break;
+                case '#':
+                    if ((types & HEX) != 0 && isHex(message, index + 1)) {
+                        // The last colored character of a rainbow or gradient can form a longer hex tag with this one
+                        int previous = lastSegmentChar != -1 ? lastSegmentChar : builder.length() > start ? builder.charAt(builder.length() - 1) : -1;
+                        int end = index + 7;
+                        if ((previous == '<' && charAt(message, end) == '>') || (previous == '{' && charAt(message, end) == '}')) {
+                            end++;
+                        } else if (previous != '&') {
+                            previous = -1;
+                        }
+
+                        if (previous != -1) {
+                            if (lastSegmentChar != -1)
+                                return false;
+                            builder.setLength(builder.length() - 1);
+                        }
+
+                        appendHex(builder, message, index);
+                        lastSegmentChar = -1;
+                        index = end;
+                        continue;
+                    }
+                    break;
             }
 
-            String before = parsed.substring(0, matcher.start());
-            String after = parsed.substring(stop);
-            parsed = before + parsedRainbow + after;
-            matcher = RAINBOW_PATTERN.matcher(parsed);
+            builder.append(c);
+            lastSegmentChar = -1;
+            index++;
         }
 
-        return parsed;
+        return true;
     }
 
-    public static String parseGradients(String message) {
-        String parsed = message;
-
-        Matcher matcher = GRADIENT_PATTERN.matcher(parsed);
-        while (matcher.find()) {
-            StringBuilder parsedGradient = new StringBuilder();
-
-            int speed = -1;
-            boolean looping = getCaptureGroup(matcher, "loop") != null;
-
-            List<Color> hexSteps = Arrays.stream(getCaptureGroup(matcher, "hex").substring(1).split(":"))
-                    .map(x -> x.length() != 4 ? x : String.format("#%s%s%s%s%s%s", x.charAt(1), x.charAt(1), x.charAt(2), x.charAt(2), x.charAt(3), x.charAt(3)))
-                    .map(Color::decode)
-                    .collect(Collectors.toList());
-
-            String speedGroup = getCaptureGroup(matcher, "speed");
-            if (speedGroup != null) {
-                try {
-                    speed = Integer.parseInt(speedGroup);
-                } catch (NumberFormatException ignored) { }
-            }
-
-            int stop = findStop(parsed, matcher.end());
-            String content = parsed.substring(matcher.end(), stop);
-            int contentLength = content.length();
-            char[] chars = content.toCharArray();
-            for (int i = 0; i < chars.length - 1; i++)
-                if (chars[i] == '&' && "KkLlMmNnOoRr".indexOf(chars[i + 1]) > -1)
-                    contentLength -= 2;
-
-            int length = looping ? Math.min(contentLength, CHARS_UNTIL_LOOP) : contentLength;
-            ColorGenerator gradient;
-            if (speed == -1) {
-                gradient = new Gradient(hexSteps, length);
+    /**
+     * Colors the content of a rainbow or gradient, splitting it into its own segment if it is animated
+     *
+     * @param builder         The StringBuilder to write to
+     * @param segments        The template segments, or null to render immediately
+     * @param tag             The rainbow or gradient tag
+     * @param chars           The content to color
+     * @param lastSegmentChar The last character of the most recent segment, or -1 if there is none
+     * @return the last character of the most recent segment, or -1 if the output ends in the StringBuilder
+     */
+    private static int appendTag(StringBuilder builder, List<ColorTemplate.Segment> segments, ColorTag tag, char[] chars, int lastSegmentChar) {
+        int lastChar = getLastColoredChar(chars);
+        if (segments == null || !tag.isAnimated() || lastChar == -1) {
+            appendColored(builder, tag.createGenerator(chars), chars);
+            return lastChar == -1 ? lastSegmentChar : -1;
+        }
+
+        ColorTemplate.addSegment(builder, segments, new ColorTemplate.AnimatedSegment(tag, chars));
+        return lastChar;
+    }
+
+    /**
+     * Reads a rainbow tag, such as {@code <rainbow#5:0.5:1:loop>}
+     *
+     * @param message The message
+     * @param index   The index of the opening bracket
+     * @return the tag, or null if there isn't a valid rainbow tag at the index
+     */
+    private static ColorTag readRainbow(String message, int index) {
+        if (charAt(message, index) != '<')
+            return null;
+
+        int i = index + 1;
+        if (message.startsWith("rainbow", i)) {
+            i += 7;
+        } else if (charAt(message, i) == 'r') {
+            i++;
+        } else {
+            return null;
+        }
+
+        int speedEnd = readDigits(message, i);
+        int speed = parseSpeed(message, i, speedEnd);
+        i = speedEnd;
+
+        float saturation = 1.0F;
+        float brightness = 1.0F;
+        int numberEnd = readNumber(message, i);
+        if (numberEnd != -1) {
+            saturation = Float.parseFloat(message.substring(i + 1, numberEnd));
+            i = numberEnd;
+
+            numberEnd = readNumber(message, i);
+            if (numberEnd != -1) {
+                brightness = Float.parseFloat(message.substring(i + 1, numberEnd));
+                i = numberEnd;
+            }
+        }
+
+        // The loop option is accepted but has never been applied to rainbows
+        i = readLoop(message, i);
+        if (i == -1 || charAt(message, i) != '>')
+            return null;
+
+        return new ColorTag(i + 1, speed, false, saturation, brightness, null);
+    }
+
+    /**
+     * Checks if a rainbow tag that colors no characters starts at an index
+     *
+     * @param stops The color stops of the message
+     * @param index The index to check
+     * @return true if the rainbow at the index has no characters to color, otherwise false
+     */
+    private static boolean isEmptyRainbow(ColorStops stops, int index) {
+        ColorTag tag = readRainbow(stops.message, index);
+        return tag != null && getLastColoredChar(stops.message.substring(tag.end, stops.after(tag.end)).toCharArray()) == -1;
+    }
+
+    /**
+     * Reads a gradient tag, such as {@code <gradient#5:#FFF:#000000:loop>}
+     *
+     * @param message The message
+     * @param index   The index of the opening bracket
+     * @return the tag, or null if there isn't a valid gradient tag at the index
+     */
+    private static ColorTag readGradient(String message, int index) {
+        if (charAt(message, index) != '<')
+            return null;
+
+        int i = index + 1;
+        if (message.startsWith("gradient", i)) {
+            i += 8;
+        } else if (charAt(message, i) == 'g') {
+            i++;
+        } else {
+            return null;
+        }
+
+        int speedEnd = readDigits(message, i);
+        int speed = parseSpeed(message, i, speedEnd);
+        i = speedEnd;
+
+        List<Color> colors = new ArrayList<>();
+        while (charAt(message, i) == ':' && charAt(message, i + 1) == '#') {
+            int start = i + 2;
+            int end = start;
+            while (end - start < 7 && isHexDigit(charAt(message, end)))
+                end++;
+
+            if (end - start == 6) {
+                colors.add(new Color(Integer.parseInt(message.substring(start, end), 16)));
+            } else if (end - start == 3) {
+                char r = message.charAt(start), g = message.charAt(start + 1), b = message.charAt(start + 2);
+                colors.add(new Color(Integer.parseInt(new String(new char[] { r, r, g, g, b, b }), 16)));
             } else {
-                gradient = new AnimatedGradient(hexSteps, length, speed);
-            }
-
-            String compoundedFormat = ""; // Carry the format codes through the gradient
-            for (int i = 0; i < chars.length; i++) {
-                char c = chars[i];
-                if (c == '&' && i + 1 < chars.length) {
-                    char next = chars[i + 1];
-                    org.bukkit.ChatColor color = org.bukkit.ChatColor.getByChar(next);
-                    if (color != null && color.isFormat()) {
-                        compoundedFormat += String.valueOf(ChatColor.COLOR_CHAR) + next;
-                        i++; // Skip next character
-                        continue;
-                    }
-                }
-                parsedGradient.append(gradient.nextChatColor()).append(compoundedFormat).append(c);
+                break;
             }
+            i = end;
+        }
+
+        if (colors.size() < 2)
+            return null;
+
+        int loopEnd = readLoop(message, i);
+        if (loopEnd == -1 || charAt(message, loopEnd) != '>')
+            return null;
 
-            String before = parsed.substring(0, matcher.start());
-            String after = parsed.substring(stop);
-            parsed = before + parsedGradient + after;
-            matcher = GRADIENT_PATTERN.matcher(parsed);
+        return new ColorTag(loopEnd + 1, speed, loopEnd != i, 1.0F, 1.0F, colors);
+    }
+
+    /**
+     * Reads the optional {@code #speed} of a rainbow or gradient tag
+     *
+     * @param message The message
+     * @param index   The index the speed may start at
+     * @return the index after the speed, or the given index if there is none
+     */
+    private static int readDigits(String message, int index) {
+        if (charAt(message, index) != '#' || !isDigit(charAt(message, index + 1)))
+            return index;
+
+        int i = index + 1;
+        while (isDigit(charAt(message, i)))
+            i++;
+        return i;
+    }
+
+    private static int parseSpeed(String message, int start, int end) {
+        if (start == end)
+            return -1;
+
+        try {
+            return Integer.parseInt(message.substring(start + 1, end));
+        } catch (NumberFormatException e) {
+            return -1;
         }
+    }
 
-        return parsed;
+    /**
+     * Reads an optional {@code :number} option of a rainbow tag
+     *
+     * @param message The message
+     * @param index   The index the option may start at
+     * @return the index after the option, or -1 if there is no number option
+     */
+    private static int readNumber(String message, int index) {
+        if (charAt(message, index) != ':')
+            return -1;
+
+        int i = index + 1;
+        int dots = 0;
+        while (isDigit(charAt(message, i)) || charAt(message, i) == '.') {
+            if (charAt(message, i) == '.')
+                dots++;
+            i++;
+        }
+
+        if (i == index + 1 || dots > 1 || !isDigit(charAt(message, i - 1)))
+            return -1;
+        return i;
     }
 
-    public static String parseHex(String message) {
-        String parsed = message;
+    /**
+     * Reads the optional {@code :loop} option of a rainbow or gradient tag
+     *
+     * @param message The message
+     * @param index   The index the option may start at
+     * @return the index after the option, the given index if there is no option, or -1 if the option is invalid
+     */
+    private static int readLoop(String message, int index) {
+        if (charAt(message, index) != ':')
+            return index;
 
-        for (Pattern pattern : HEX_PATTERNS) {
-            Matcher matcher = pattern.matcher(parsed);
-            while (matcher.find()) {
-                String color = translateHex(cleanHex(matcher.group())).toString();
-                String before = parsed.substring(0, matcher.start());
-                String after = parsed.substring(matcher.end());
-                parsed = before + color + after;
-                matcher = pattern.matcher(parsed);
+        if (message.startsWith("loop>", index + 1))
+            return index + 5;
+
+        char c = charAt(message, index + 1);
+        if ((c == 'l' || c == 'L') && charAt(message, index + 2) == '>')
+            return index + 2;
+
+        return -1;
+    }
+
+    /**
+     * Checks if the six characters at an index are hex digits
+     *
+     * @param message The message
+     * @param index   The index of the first digit
+     * @return true if there are six hex digits at the index, otherwise false
+     */
+    private static boolean isHex(String message, int index) {
+        if (index + 6 > message.length())
+            return false;
+
+        for (int i = index; i < index + 6; i++)
+            if (!isHexDigit(message.charAt(i)))
+                return false;
+        return true;
+    }
+
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static char charAt(String message, int index) {
+        return index < message.length() ? message.charAt(index) : 0;
+    }
+
+    /**
+     * Gets the number of characters in a rainbow or gradient that will receive a color
+     *
+     * @param chars The content of the rainbow or gradient
+     * @return the number of colored characters, ignoring format codes
+     */
+    private static int getContentLength(char[] chars) {
+        int contentLength = chars.length;
+        for (int i = 0; i < chars.length - 1; i++)
+            if (chars[i] == '&' && "KkLlMmNnOoRr".indexOf(chars[i + 1]) > -1)
+                contentLength -= 2;
+        return contentLength;
+    }
+
+    /**
+     * Gets the last character of a rainbow or gradient that will receive a color
+     *
+     * @param chars The content of the rainbow or gradient
+     * @return the last colored character, or -1 if there is none
+     */
+    private static int getLastColoredChar(char[] chars) {
+        int lastChar = -1;
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] == '&' && i + 1 < chars.length) {
+                org.bukkit.ChatColor color = org.bukkit.ChatColor.getByChar(chars[i + 1]);
+                if (color != null && color.isFormat()) {
+                    i++;
+                    continue;
+                }
             }
+            lastChar = chars[i];
         }
+        return lastChar;
+    }
 
-        return parsed;
+    /**
+     * Appends each character prefixed with the next color of a generator, carrying format codes through
+     *
+     * @param builder   The StringBuilder to append to
+     * @param generator The ColorGenerator to take colors from
+     * @param chars     The content to color
+     */
+    private static void appendColored(StringBuilder builder, ColorGenerator generator, char[] chars) {
+        String compoundedFormat = ""; // Carry the format codes through the rainbow or gradient
+        for (int i = 0; i < chars.length; i++) {
+            char c = chars[i];
+            if (c == '&' && i + 1 < chars.length) {
+                char next = chars[i + 1];
+                org.bukkit.ChatColor color = org.bukkit.ChatColor.getByChar(next);
+                if (color != null && color.isFormat()) {
+                    compoundedFormat += String.valueOf(ChatColor.COLOR_CHAR) + next;
+                    i++; // Skip next character
+                    continue;
+                }
+            }
+            generator.appendNextColor(builder);
+            builder.append(compoundedFormat).append(c);
+        }
     }
 
-    public static String parseLegacy(String message) {
-        return ChatColor.translateAlternateColorCodes('&', message);
+    /**
+     * The positions in a message where a rainbow or gradient stops, found with a single scan the first time they are
+     * needed so any number of tags can look up their stop without searching the message again
+     */
+    private static final class ColorStops {
+
+        private final String message;
+        private int[] starts;
+        private int count;
+
+        private ColorStops(String message) {
+            this.message = message;
+        }
+
+        /**
+         * Returns the index before the color changes
+         *
+         * @param searchAfter The index at which to search after
+         * @return the index of the color stop, or the end of the string index if none is found
+         */
+        private int after(int searchAfter) {
+            if (this.starts == null)
+                this.index();
+
+            int low = 0, high = this.count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (this.starts[middle] > searchAfter) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return low < this.count ? this.starts[low] : this.message.length();
+        }
+
+        private void index() {
+            this.starts = new int[8];
+            Matcher matcher = STOP.matcher(this.message);
+            while (matcher.find()) {
+                if (this.count == this.starts.length)
+                    this.starts = Arrays.copyOf(this.starts, this.count * 2);
+                this.starts[this.count++] = matcher.start();
+            }
+        }
+
     }
 
     /**
-     * Returns the index before the color changes
+     * Splits a colored message into components, merging neighbouring text that ends up with the same style
      *
-     * @param content     The content to search through
-     * @param searchAfter The index at which to search after
-     * @return the index of the color stop, or the end of the string index if none is found
+     * @param message The colored message
+     * @return The components of the message
      */
-    private static int findStop(String content, int searchAfter) {
-        Matcher matcher = STOP.matcher(content);
-        while (matcher.find()) {
-            if (matcher.start() > searchAfter)
-                return matcher.start();
+    private static BaseComponent[] toComponents(String message) {
+        List<BaseComponent> components = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        ChatColor color = null, textColor = null;
+        int format = 0, textFormat = 0;
+        int length = message.length();
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            if (c == ChatColor.COLOR_CHAR && i + 1 < length) {
+                char code = Character.toLowerCase(message.charAt(i + 1));
+                if (code == 'x' && isSerializedHex(message, i + 2)) {
+                    int rgb = 0;
+                    for (int j = i + 3; j < i + 14; j += 2)
+                        rgb = (rgb << 4) | Character.digit(message.charAt(j), 16);
+                    color = translateHex(rgb);
+                    format = 0;
+                    i += 13;
+                    continue;
+                }
+
+                ChatColor legacy = ChatColor.getByChar(code);
+                if (legacy != null && code != 'x') {
+                    if (legacy == ChatColor.BOLD) {
+                        format |= BOLD;
+                    } else if (legacy == ChatColor.ITALIC) {
+                        format |= ITALIC;
+                    } else if (legacy == ChatColor.UNDERLINE) {
+                        format |= UNDERLINED;
+                    } else if (legacy == ChatColor.STRIKETHROUGH) {
+                        format |= STRIKETHROUGH;
+                    } else if (legacy == ChatColor.MAGIC) {
+                        format |= OBFUSCATED;
+                    } else {
+                        color = legacy == ChatColor.RESET ? null : legacy;
+                        format = 0;
+                    }
+                    i++;
+                    continue;
+                }
+            }
+
+            if (text.length() > 0 && (!Objects.equals(color, textColor) || format != textFormat)) {
+                components.add(createComponent(text.toString(), textColor, textFormat));
+                text.setLength(0);
+            }
+
+            textColor = color;
+            textFormat = format;
+            text.append(c);
         }
-        return content.length();
+
+        if (text.length() > 0)
+            components.add(createComponent(text.toString(), textColor, textFormat));
+        return components.toArray(new BaseComponent[0]);
     }
 
-    private static String cleanHex(String hex) {
-        if (hex.startsWith("<") || hex.startsWith("{")) {
-            return hex.substring(1, hex.length() - 1);
-        } else if (hex.startsWith("&")) {
-            return hex.substring(1);
-        } else {
-            return hex;
-        }
+    private static BaseComponent createComponent(String text, ChatColor color, int format) {
+        TextComponent component = new TextComponent(text);
+        if (color != null)
+            component.setColor(color);
+        if ((format & BOLD) != 0)
+            component.setBold(true);
+        if ((format & ITALIC) != 0)
+            component.setItalic(true);
+        if ((format & UNDERLINED) != 0)
+            component.setUnderlined(true);
+        if ((format & STRIKETHROUGH) != 0)
+            component.setStrikethrough(true);
+        if ((format & OBFUSCATED) != 0)
+            component.setObfuscated(true);
+        return component;
+    }
+
+    /**
+     * Checks if a serialized {@code §r§r§g§g§b§b} hex color starts at an index
+     *
+     * @param message The message
+     * @param index   The index of the first color character
+     * @return true if there is a serialized hex color at the index, otherwise false
+     */
+    private static boolean isSerializedHex(String message, int index) {
+        if (index + 12 > message.length())
+            return false;
+
+        for (int i = index; i < index + 12; i += 2)
+            if (message.charAt(i) != ChatColor.COLOR_CHAR || !isHexDigit(message.charAt(i + 1)))
+                return false;
+        return true;
     }
 
     /**
@@ -272,29 +850,505 @@ public class HexUtils {
      * @return The closest ChatColor value
      */
     public static ChatColor translateHex(String hex) {
-        if (NMSUtil.getVersionNumber() >= 16)
+        if (NMSUtil.getVersionNumber() >= 16) {
+            // ChatColors keep the case of the hex they were made from, only lowercase hex can share one
+            if (hex.length() == 7 && hex.charAt(0) == '#' && isHex(hex, 1) && hex.equals(hex.toLowerCase()))
+                return ChatColorCache.get(Integer.parseInt(hex.substring(1), 16)).chatColor;
             return ChatColor.of(hex);
+        }
         return translateHex(Color.decode(hex));
     }
 
     public static ChatColor translateHex(Color color) {
+        return translateHex(color.getRGB() & 0xFFFFFF);
+    }
+
+    /**
+     * Finds the closest hex or ChatColor value for a packed RGB color
+     *
+     * @param rgb The packed RGB color
+     * @return The closest ChatColor value
+     */
+    public static ChatColor translateHex(int rgb) {
         if (NMSUtil.getVersionNumber() >= 16)
-            return ChatColor.of(color);
+            return ChatColorCache.get(rgb).chatColor;
+        return ChatColorHexMapping.getClosest(rgb).getChatColor();
+    }
+
+    /**
+     * Appends a hex color from a message, keeping the case of its digits
+     *
+     * @param builder The StringBuilder to append to
+     * @param message The message
+     * @param index   The index of the # before the six hex digits
+     */
+    private static void appendHex(StringBuilder builder, String message, int index) {
+        if (NMSUtil.getVersionNumber() < 16) {
+            builder.append(translateHex(message.substring(index, index + 7)));
+            return;
+        }
+
+        builder.append(ChatColor.COLOR_CHAR).append('x');
+        for (int i = index + 1; i < index + 7; i++)
+            builder.append(ChatColor.COLOR_CHAR).append(message.charAt(i));
+    }
 
-        int minDist = Integer.MAX_VALUE;
-        ChatColor legacy = ChatColor.WHITE;
-        for (ChatColorHexMapping mapping : ChatColorHexMapping.values()) {
-            int r = mapping.getRed() - color.getRed();
-            int g = mapping.getGreen() - color.getGreen();
-            int b = mapping.getBlue() - color.getBlue();
-            int dist = r * r + g * g + b * b;
-            if (dist < minDist) {
-                minDist = dist;
-                legacy = mapping.getChatColor();
+    /**
+     * Appends a packed RGB color in the {@code §x§r§r§g§g§b§b} format
+     *
+     * @param builder The StringBuilder to append to
+     * @param rgb     The packed RGB color
+     */
+    private static void appendHex(StringBuilder builder, int rgb) {
+        builder.append(ChatColorCache.get(rgb).serialized);
+    }
+
+    /**
+     * A message compiled into literal and color segments so it only has to be parsed once.
+     * Templates without animated rainbows or gradients are rendered a single time and reused.
+     * Animated templates keep their latest frame, so everyone rendering within the same frame shares one string.
+     */
+    public static final class ColorTemplate {
+
+        private static final int MAX_CACHED_TEMPLATES = 1024;
+        private static final Map<String, ColorTemplate> CACHE = new ConcurrentHashMap<>();
+        private static final AtomicBoolean EVICTING = new AtomicBoolean();
+
+        private final List<Segment> segments;
+        private final String rendered;
+        private final long[] frameLengths;
+        private volatile Frame frame;
+        private volatile BaseComponent[] components; // The components of the rendered message, made when first needed
+        private volatile boolean used; // Set when the cached template is used again, cleared as eviction passes it
+
+        private ColorTemplate(List<Segment> segments, String rendered) {
+            this.segments = segments;
+            this.rendered = rendered;
+            this.frameLengths = segments.stream().anyMatch(x -> x.getFrameLength() == -1) ? null
+                    : segments.stream().mapToLong(Segment::getFrameLength).filter(x -> x > 0).toArray();
+        }
+
+        /**
+         * Gets the template for a message, compiling and caching it if it hasn't been seen recently.
+         * Messages without any color syntax and messages that have already been colored are compiled without being
+         * cached, so rendered and player specific strings don't push the reused templates out of the cache.
+         *
+         * @param message The message
+         * @return the compiled template for the message
+         */
+        public static ColorTemplate of(String message) {
+            if (!containsColorSyntax(message) || message.indexOf(ChatColor.COLOR_CHAR) != -1)
+                return compile(message);
+
+            ColorTemplate template = CACHE.get(message);
+            if (template != null) {
+                if (!template.used)
+                    template.used = true;
+                return template;
             }
+
+            template = compile(message);
+            if (CACHE.size() >= MAX_CACHED_TEMPLATES)
+                evict();
+            CACHE.put(message, template);
+            return template;
+        }
+
+        /**
+         * Removes cached templates that haven't been used since eviction last passed them, until the cache is down to
+         * three quarters of its maximum size. Only one thread evicts at a time, the others carry on without waiting.
+         */
+        private static void evict() {
+            if (!EVICTING.compareAndSet(false, true))
+                return;
+
+            try {
+                int target = MAX_CACHED_TEMPLATES * 3 / 4;
+                for (int pass = 0; pass < 2 && CACHE.size() > target; pass++) {
+                    Iterator<ColorTemplate> iterator = CACHE.values().iterator();
+                    while (iterator.hasNext() && CACHE.size() > target) {
+                        ColorTemplate template = iterator.next();
+                        if (template.used) {
+                            template.used = false;
+                        } else {
+                            iterator.remove();
+                        }
+                    }
+                }
+            } finally {
+                EVICTING.set(false);
+            }
+        }
+
+        /**
+         * @param message The message
+         * @return true if the message contains a character that can start a color, otherwise false
+         */
+        private static boolean containsColorSyntax(String message) {
+            for (int i = 0, length = message.length(); i < length; i++) {
+                char c = message.charAt(i);
+                if (c == '<' || c == '{' || c == '&' || c == '#')
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Compiles a message into a template without caching it
+         *
+         * @param message The message
+         * @return the compiled template for the message
+         */
+        public static ColorTemplate compile(String message) {
+            if (!containsColorSyntax(message))
+                return new ColorTemplate(Collections.emptyList(), message);
+
+            List<Segment> segments = new ArrayList<>();
+            StringBuilder builder = new StringBuilder(message.length());
+            boolean split;
+            try {
+                split = parse(message, ALL, builder, segments);
+            } catch (RuntimeException e) {
+                split = false; // Let rendering fail the same way parsing the message directly would
+            }
+
+            if (!split) {
+                // The animated parts run into the text around them, parse the whole message on every render
+                Segment segment = new Segment() {
+                    @Override
+                    public void render(StringBuilder builder, long time) {
+                        parse(message, ALL, builder, null);
+                    }
+
+                    @Override
+                    public long getFrameLength() {
+                        return -1;
+                    }
+                };
+                return new ColorTemplate(Collections.singletonList(segment), null);
+            }
+
+            // Nothing changes over time, render everything once
+            if (segments.isEmpty())
+                return new ColorTemplate(Collections.emptyList(), builder.toString());
+
+            addSegment(builder, segments, null);
+            return new ColorTemplate(segments, null);
+        }
+
+        /**
+         * Moves the pending literal text into its own segment, then adds a segment after it
+         *
+         * @param builder  The StringBuilder holding the pending literal text
+         * @param segments The segments of the template being compiled
+         * @param segment  The segment to add, or null to only move the pending literal text
+         */
+        private static void addSegment(StringBuilder builder, List<Segment> segments, Segment segment) {
+            if (builder.length() > 0) {
+                String literal = builder.toString();
+                segments.add((x, time) -> x.append(literal));
+                builder.setLength(0);
+            }
+
+            if (segment != null)
+                segments.add(segment);
+        }
+
+        /**
+         * @return the colored message
+         */
+        public String render() {
+            if (this.rendered != null)
+                return this.rendered;
+            return this.render(new StringBuilder());
+        }
+
+        /**
+         * @param builder A scratch StringBuilder to render animations with, its contents are replaced
+         * @return the colored message
+         */
+        private String render(StringBuilder builder) {
+            return this.render(builder, System.currentTimeMillis());
+        }
+
+        /**
+         * Appends the colored message to a StringBuilder, rendering animations straight into it
+         *
+         * @param builder The StringBuilder to append to
+         */
+        public void appendTo(StringBuilder builder) {
+            if (this.rendered != null) {
+                builder.append(this.rendered);
+                return;
+            }
+
+            long time = System.currentTimeMillis();
+            Frame frame = this.frame;
+            if (frame != null && frame.isShownAt(this.frameLengths, time)) {
+                builder.append(frame.rendered);
+                return;
+            }
+
+            int start = builder.length();
+            for (Segment segment : this.segments)
+                segment.render(builder, time);
+
+            if (this.frameLengths != null)
+                this.frame = new Frame(this.frameLengths, time, builder.substring(start));
+        }
+
+        /**
+         * @param time The time in milliseconds to render animations at
+         * @return the colored message as it is shown at the given time
+         */
+        String renderAt(long time) {
+            return this.render(new StringBuilder(), time);
+        }
+
+        private String render(StringBuilder builder, long time) {
+            if (this.rendered != null)
+                return this.rendered;
+
+            Frame frame = this.frame;
+            if (frame != null && frame.isShownAt(this.frameLengths, time))
+                return frame.rendered;
+
+            builder.setLength(0);
+            for (Segment segment : this.segments)
+                segment.render(builder, time);
+
+            String rendered = builder.toString();
+            if (this.frameLengths != null)
+                this.frame = new Frame(this.frameLengths, time, rendered);
+            return rendered;
+        }
+
+        /**
+         * Renders the message as chat components. The components of a message that never changes are made once, and
+         * the components of an animation are made once for each frame, every caller gets its own copy of them.
+         *
+         * @return the colored message as chat components
+         */
+        public BaseComponent[] renderComponents() {
+            if (this.rendered != null) {
+                BaseComponent[] components = this.components;
+                if (components == null)
+                    this.components = components = toComponents(this.rendered);
+                return duplicate(components);
+            }
+
+            String rendered = this.render();
+            Frame frame = this.frame;
+            if (frame == null || frame.rendered != rendered)
+                return toComponents(rendered); // Parsed again on every render, or another frame was rendered meanwhile
+
+            BaseComponent[] components = frame.components;
+            if (components == null)
+                frame.components = components = toComponents(rendered);
+            return duplicate(components);
+        }
+
+        private static BaseComponent[] duplicate(BaseComponent[] components) {
+            BaseComponent[] copies = new BaseComponent[components.length];
+            for (int i = 0; i < components.length; i++)
+                copies[i] = components[i].duplicate();
+            return copies;
+        }
+
+        /**
+         * @return true if this template contains animated rainbows or gradients, otherwise false
+         */
+        public boolean isAnimated() {
+            return this.rendered == null;
+        }
+
+        /**
+         * Removes all cached templates
+         */
+        public static void clearCache() {
+            CACHE.clear();
+        }
+
+        private interface Segment {
+
+            /**
+             * Appends this segment to a message
+             *
+             * @param builder The StringBuilder to append to
+             * @param time    The time in milliseconds to render animations at
+             */
+            void render(StringBuilder builder, long time);
+
+            /**
+             * @return how many milliseconds a frame of this segment lasts, 0 if it never changes, or -1 if it can't be cached
+             */
+            default long getFrameLength() {
+                return 0;
+            }
+
+        }
+
+        /**
+         * An animated rainbow or gradient
+         */
+        private static final class AnimatedSegment implements Segment {
+
+            private final ColorTag tag;
+            private final char[] chars;
+
+            private AnimatedSegment(ColorTag tag, char[] chars) {
+                this.tag = tag;
+                this.chars = chars;
+            }
+
+            @Override
+            public void render(StringBuilder builder, long time) {
+                appendColored(builder, this.tag.createGenerator(this.chars, time), this.chars);
+            }
+
+            @Override
+            public long getFrameLength() {
+                return this.tag.getFrameLength();
+            }
+
+        }
+
+        /**
+         * A rendered template along with the frame of each animation it was rendered at
+         */
+        private static final class Frame {
+
+            private final long[] indices;
+            private final String rendered;
+            private volatile BaseComponent[] components;
+
+            private Frame(long[] frameLengths, long time, String rendered) {
+                this.indices = new long[frameLengths.length];
+                for (int i = 0; i < frameLengths.length; i++)
+                    this.indices[i] = time / frameLengths[i];
+                this.rendered = rendered;
+            }
+
+            /**
+             * @param frameLengths How many milliseconds each animation's frame lasts
+             * @param time         The time in milliseconds
+             * @return true if every animation is still on the same frame at the given time, otherwise false
+             */
+            private boolean isShownAt(long[] frameLengths, long time) {
+                for (int i = 0; i < frameLengths.length; i++)
+                    if (time / frameLengths[i] != this.indices[i])
+                        return false;
+                return true;
+            }
+
+        }
+
+    }
+
+    /**
+     * Shares ChatColors and their {@code §x§r§r§g§g§b§b} strings between every hex color lookup.
+     * Each color has a single slot picked by its hash, so a new color replaces whichever color held the slot.
+     * Entries are immutable, making the cache safe to use from any thread without locking.
+     */
+    private static final class ChatColorCache {
+
+        private static final int SLOT_BITS = 12;
+        private static final AtomicReferenceArray<ChatColorCache> ENTRIES = new AtomicReferenceArray<>(1 << SLOT_BITS);
+
+        private final int rgb;
+        private final ChatColor chatColor;
+        private final String serialized;
+
+        private ChatColorCache(int rgb) {
+            this.rgb = rgb;
+            this.chatColor = ChatColor.of(new Color(rgb));
+            this.serialized = this.chatColor.toString();
+        }
+
+        /**
+         * Gets the shared entry for a color, creating it if the color isn't cached
+         *
+         * @param rgb The packed RGB color
+         * @return the cache entry for the color
+         */
+        private static ChatColorCache get(int rgb) {
+            rgb &= 0xFFFFFF;
+            int slot = (rgb * 0x9E3779B1) >>> (32 - SLOT_BITS); // Spread similar colors across the slots
+            ChatColorCache entry = ENTRIES.get(slot);
+            if (entry == null || entry.rgb != rgb) {
+                entry = new ChatColorCache(rgb);
+                ENTRIES.set(slot, entry);
+            }
+            return entry;
+        }
+
+    }
+
+    /**
+     * The options of a rainbow or gradient tag
+     */
+    private static final class ColorTag {
+
+        private final int end;
+        private final int speed;
+        private final boolean looping;
+        private final float saturation, brightness;
+        private final List<Color> colors;
+
+        private ColorTag(int end, int speed, boolean looping, float saturation, float brightness, List<Color> colors) {
+            this.end = end;
+            this.speed = speed;
+            this.looping = looping;
+            this.saturation = saturation;
+            this.brightness = brightness;
+            this.colors = colors;
+        }
+
+        /**
+         * @return true if this tag changes over time, otherwise false
+         */
+        private boolean isAnimated() {
+            return this.speed != -1;
+        }
+
+        /**
+         * @return how many milliseconds the animation of this tag stays on the same frame
+         */
+        private long getFrameLength() {
+            // Rainbows move on every 50 milliseconds no matter the speed, a speed of 0 fails when rendering anyway
+            return this.colors == null ? 50 : Math.max(this.speed, 1);
+        }
+
+        /**
+         * Creates a new ColorGenerator for this tag
+         *
+         * @param chars The content the generator will color
+         * @return a Rainbow or Gradient for the content
+         */
+        private ColorGenerator createGenerator(char[] chars) {
+            return this.createGenerator(chars, System.currentTimeMillis());
+        }
+
+        /**
+         * Creates a new ColorGenerator for this tag
+         *
+         * @param chars The content the generator will color
+         * @param time  The time in milliseconds to start animations at
+         * @return a Rainbow or Gradient for the content
+         */
+        private ColorGenerator createGenerator(char[] chars, long time) {
+            int length = this.looping ? Math.min(getContentLength(chars), CHARS_UNTIL_LOOP) : getContentLength(chars);
+            if (this.colors == null) {
+                if (this.speed == -1)
+                    return new Rainbow(length, this.saturation, this.brightness);
+                return new AnimatedRainbow(length, this.saturation, this.brightness, this.speed, time);
+            }
+
+            if (this.speed == -1)
+                return new Gradient(this.colors, length);
+            return new AnimatedGradient(this.colors, length, this.speed, time);
         }
 
-        return legacy;
     }
 
     /**
@@ -319,6 +1373,10 @@ public class HexUtils {
         YELLOW(0xFFFF55, ChatColor.YELLOW),
         WHITE(0xFFFFFF, ChatColor.WHITE);
 
+        private static final ChatColorHexMapping[] VALUES = values();
+        private static final int CELL_BITS = 3; // Each cell of the table covers 8 values per channel
+        private static final byte MIXED_CELL = -1;
+
         private final int r, g, b;
         private final ChatColor chatColor;
 
@@ -345,6 +1403,71 @@ public class HexUtils {
             return this.chatColor;
         }
 
+        /**
+         * Finds the mapping closest to a color
+         *
+         * @param rgb The packed RGB color
+         * @return The closest mapping
+         */
+        public static ChatColorHexMapping getClosest(int rgb) {
+            int r = (rgb >> 16) & 0xFF, g = (rgb >> 8) & 0xFF, b = rgb & 0xFF;
+            int cell = ClosestTable.CELLS[((r >> CELL_BITS) << (2 * (8 - CELL_BITS))) | ((g >> CELL_BITS) << (8 - CELL_BITS)) | (b >> CELL_BITS)];
+            if (cell != MIXED_CELL)
+                return VALUES[cell];
+            return findClosest(r, g, b);
+        }
+
+        private static ChatColorHexMapping findClosest(int red, int green, int blue) {
+            int minDist = Integer.MAX_VALUE;
+            ChatColorHexMapping legacy = WHITE;
+            for (ChatColorHexMapping mapping : VALUES) {
+                int r = mapping.getRed() - red;
+                int g = mapping.getGreen() - green;
+                int b = mapping.getBlue() - blue;
+                int dist = r * r + g * g + b * b;
+                if (dist < minDist) {
+                    minDist = dist;
+                    legacy = mapping;
+                }
+            }
+
+            return legacy;
+        }
+
+        /**
+         * The closest mapping for each cell of the quantised RGB cube, built the first time it is needed.
+         * The area closest to each mapping is convex, so a cell whose eight corners share a mapping lies entirely
+         * within it. Cells that straddle a border are marked as mixed and searched per color.
+         */
+        private static final class ClosestTable {
+
+            private static final byte[] CELLS = build();
+
+            private static byte[] build() {
+                int size = 1 << (8 - CELL_BITS);
+                int span = (1 << CELL_BITS) - 1;
+                byte[] cells = new byte[size * size * size];
+                for (int r = 0; r < size; r++) {
+                    for (int g = 0; g < size; g++) {
+                        for (int b = 0; b < size; b++) {
+                            int lowR = r << CELL_BITS, lowG = g << CELL_BITS, lowB = b << CELL_BITS;
+                            ChatColorHexMapping closest = findClosest(lowR, lowG, lowB);
+                            for (int corner = 1; corner < 8 && closest != null; corner++) {
+                                int cornerR = (corner & 4) == 0 ? lowR : lowR + span;
+                                int cornerG = (corner & 2) == 0 ? lowG : lowG + span;
+                                int cornerB = (corner & 1) == 0 ? lowB : lowB + span;
+                                if (findClosest(cornerR, cornerG, cornerB) != closest)
+                                    closest = null;
+                            }
+                            cells[(r * size + g) * size + b] = closest == null ? MIXED_CELL : (byte) closest.ordinal();
+                        }
+                    }
+                }
+                return cells;
+            }
+
+        }
+
     }
 
     public interface ColorGenerator {
@@ -359,6 +1482,22 @@ public class HexUtils {
          */
         Color nextColor();
 
+        /**
+         * @return the next color in the sequence as a packed RGB int
+         */
+        default int nextRGB() {
+            return this.nextColor().getRGB() & 0xFFFFFF;
+        }
+
+        /**
+         * Appends the next color in the sequence to a StringBuilder
+         *
+         * @param builder The StringBuilder to append to
+         */
+        default void appendNextColor(StringBuilder builder) {
+            builder.append(this.nextChatColor());
+        }
+
     }
 
     /**
@@ -368,6 +1507,7 @@ public class HexUtils {
 
         private final List<TwoStopGradient> gradients;
         private final int steps;
+        private final float segment;
         protected long step;
 
         public Gradient(List<Color> colors, int steps) {
@@ -381,45 +1521,69 @@ public class HexUtils {
             float increment = (float) (this.steps - 1) / (colors.size() - 1);
             for (int i = 0; i < colors.size() - 1; i++)
                 this.gradients.add(new TwoStopGradient(colors.get(i), colors.get(i + 1), increment * i, increment * (i + 1)));
+            this.segment = (float) this.steps / this.gradients.size();
         }
 
         @Override
         public ChatColor nextChatColor() {
             // Gradients will use the first color if the entire spectrum won't be available to preserve prettiness
             if (NMSUtil.getVersionNumber() < 16 || this.steps <= 1)
-                return translateHex(this.gradients.get(0).colorAt(0));
-            return translateHex(this.nextColor());
+                return translateHex(this.gradients.get(0).rgbAt(0));
+            return translateHex(this.nextRGB());
         }
 
         @Override
         public Color nextColor() {
-            // Do some wizardry to get a function that bounces back and forth between 0 and a cap given an increasing input
-            // Thanks to BomBardyGamer for assisting with this
-            int adjustedStep = (int) Math.round(Math.abs(((2 * Math.asin(Math.sin(this.step * (Math.PI / (2 * this.steps))))) / Math.PI) * this.steps));
+            return new Color(this.nextRGB());
+        }
+
+        @Override
+        public int nextRGB() {
+            int adjustedStep;
+            if (this.steps <= 0) {
+                // There is nothing to bounce between, keep the values the original sine wave gave
+                adjustedStep = (int) Math.round(Math.abs(((2 * Math.asin(Math.sin(this.step * (Math.PI / (2 * this.steps))))) / Math.PI) * this.steps));
+            } else {
+                // Bounce back and forth between 0 and the number of steps as the step increases
+                long period = 2L * this.steps;
+                adjustedStep = (int) (((this.step % period) + period) % period);
+                if (adjustedStep > this.steps)
+                    adjustedStep = (int) (period - adjustedStep);
+            }
 
-            Color color;
+            int rgb;
             if (this.gradients.size() < 2) {
-                color = this.gradients.get(0).colorAt(adjustedStep);
+                rgb = this.gradients.get(0).rgbAt(adjustedStep);
             } else {
-                float segment = (float) this.steps / this.gradients.size();
-                int index = (int) Math.min(Math.floor(adjustedStep / segment), this.gradients.size() - 1);
-                color = this.gradients.get(index).colorAt(adjustedStep);
+                int index = (int) Math.min(Math.floor(adjustedStep / this.segment), this.gradients.size() - 1);
+                rgb = this.gradients.get(index).rgbAt(adjustedStep);
             }
 
             this.step++;
-            return color;
+            return rgb;
+        }
+
+        @Override
+        public void appendNextColor(StringBuilder builder) {
+            if (NMSUtil.getVersionNumber() < 16) {
+                builder.append(ChatColorHexMapping.getClosest(this.gradients.get(0).rgbAt(0)).getChatColor());
+            } else if (this.steps <= 1) {
+                appendHex(builder, this.gradients.get(0).rgbAt(0));
+            } else {
+                appendHex(builder, this.nextRGB());
+            }
         }
 
         public static class TwoStopGradient {
 
-            private final Color startColor;
-            private final Color endColor;
+            private final int startColor;
+            private final int endColor;
             private final float lowerRange;
             private final float upperRange;
 
             private TwoStopGradient(Color startColor, Color endColor, float lowerRange, float upperRange) {
-                this.startColor = startColor;
-                this.endColor = endColor;
+                this.startColor = startColor.getRGB() & 0xFFFFFF;
+                this.endColor = endColor.getRGB() & 0xFFFFFF;
                 this.lowerRange = lowerRange;
                 this.upperRange = upperRange;
             }
@@ -431,11 +1595,22 @@ public class HexUtils {
              * @return The color of this gradient at the given step
              */
             public Color colorAt(int step) {
-                return new Color(
-                        this.calculateHexPiece(step, this.startColor.getRed(), this.endColor.getRed()),
-                        this.calculateHexPiece(step, this.startColor.getGreen(), this.endColor.getGreen()),
-                        this.calculateHexPiece(step, this.startColor.getBlue(), this.endColor.getBlue())
-                );
+                return new Color(this.rgbAt(step));
+            }
+
+            /**
+             * Gets the color of this gradient at the given step as a packed RGB int
+             *
+             * @param step The step
+             * @return The color of this gradient at the given step
+             */
+            public int rgbAt(int step) {
+                int red = this.calculateHexPiece(step, (this.startColor >> 16) & 0xFF, (this.endColor >> 16) & 0xFF);
+                int green = this.calculateHexPiece(step, (this.startColor >> 8) & 0xFF, (this.endColor >> 8) & 0xFF);
+                int blue = this.calculateHexPiece(step, this.startColor & 0xFF, this.endColor & 0xFF);
+                if (((red | green | blue) & ~0xFF) != 0)
+                    throw new IllegalArgumentException("Color parameter outside of expected range: " + red + ", " + green + ", " + blue);
+                return (red << 16) | (green << 8) | blue;
             }
 
             private int calculateHexPiece(int step, int channelStart, int channelEnd) {
@@ -456,9 +1631,13 @@ public class HexUtils {
     public static class AnimatedGradient extends Gradient {
 
         public AnimatedGradient(List<Color> colors, int steps, int speed) {
+            this(colors, steps, speed, System.currentTimeMillis());
+        }
+
+        public AnimatedGradient(List<Color> colors, int steps, int speed, long time) {
             super(colors, steps);
 
-            this.step = System.currentTimeMillis() / speed;
+            this.step = time / speed;
         }
 
     }
@@ -483,14 +1662,28 @@ public class HexUtils {
 
         @Override
         public ChatColor nextChatColor() {
-            return translateHex(this.nextColor());
+            return translateHex(this.nextRGB());
         }
 
         @Override
         public Color nextColor() {
-            Color color = Color.getHSBColor(this.hue, this.saturation, this.brightness);
+            return new Color(this.nextRGB());
+        }
+
+        @Override
+        public int nextRGB() {
+            int rgb = Color.HSBtoRGB(this.hue, this.saturation, this.brightness) & 0xFFFFFF;
             this.hue += this.hueStep;
-            return color;
+            return rgb;
+        }
+
+        @Override
+        public void appendNextColor(StringBuilder builder) {
+            if (NMSUtil.getVersionNumber() < 16) {
+                builder.append(ChatColorHexMapping.getClosest(this.nextRGB()).getChatColor());
+            } else {
+                appendHex(builder, this.nextRGB());
+            }
         }
 
     }
@@ -501,9 +1694,13 @@ public class HexUtils {
     public static class AnimatedRainbow extends Rainbow {
 
         public AnimatedRainbow(int totalColors, float saturation, float brightness, int speed) {
+            this(totalColors, saturation, brightness, speed, System.currentTimeMillis());
+        }
+
+        public AnimatedRainbow(int totalColors, float saturation, float brightness, int speed, long time) {
             super(totalColors, saturation, brightness);
 
-            this.hue = (float) ((((Math.floor(System.currentTimeMillis() / 50.0)) / 360) * speed) % 1);
+            this.hue = (float) ((((Math.floor(time / 50.0)) / 360) * speed) % 1);
         }
 
     }
@@ -0,0 +1,257 @@
+package xyz.akiradev.pluginutils.utils;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A message split into its literal parts and %placeholder% slots, with the literal parts colored ahead of time.
+ * Rendering gives the same result as applying the placeholders and then coloring the message.
+ */
+public final class MessageTemplate {
+
+    private static final String COLOR_SYNTAX = "&#<{";
+
+    private final String message;
+    private final HexUtils.ColorTemplate colorTemplate;
+    private final String[] parts;
+    private final String[] coloredParts;
+    private final boolean[] closed;
+    private final boolean splittable;
+    private final String[] placeholders;
+    private final int length;
+
+    private MessageTemplate(String message) {
+        this.message = message;
+        this.colorTemplate = HexUtils.ColorTemplate.compile(message);
+
+        int count = 1;
+        for (int i = 0; i < message.length(); i++)
+            if (message.charAt(i) == '%')
+                count++;
+
+        this.parts = new String[count];
+        this.coloredParts = new String[count];
+        this.closed = new boolean[count];
+
+        // Rainbows and gradients color everything up to their stop, so they can't be colored in parts
+        boolean splittable = !message.contains("<r") && !message.contains("<g");
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = i < count - 1 ? message.indexOf('%', start) : message.length();
+            this.parts[i] = message.substring(start, end);
+            this.closed[i] = isClosed(this.parts[i]);
+            start = end + 1;
+
+            try {
+                this.coloredParts[i] = HexUtils.ColorTemplate.compile(this.parts[i]).render();
+            } catch (RuntimeException e) {
+                // Render the whole message every time instead, so the error is thrown when this message is sent
+                this.coloredParts[i] = this.parts[i];
+                splittable = false;
+            }
+        }
+        this.splittable = splittable;
+
+        int length = 0;
+        for (String part : this.coloredParts)
+            length += part.length() + 1;
+        this.length = length;
+
+        // Anything between two % could be a placeholder, leave out the parts that clearly aren't
+        Set<String> placeholders = new LinkedHashSet<>();
+        for (int i = 1; i + 1 < count; i++)
+            if (!this.parts[i].isEmpty() && this.parts[i].indexOf(' ') == -1)
+                placeholders.add(this.parts[i]);
+        this.placeholders = placeholders.toArray(new String[0]);
+    }
+
+    /**
+     * Compiles a message into a template
+     *
+     * @param message The message
+     * @return the compiled template for the message
+     */
+    public static MessageTemplate compile(String message) {
+        return new MessageTemplate(message);
+    }
+
+    /**
+     * @return the message this template was compiled from
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * @return true if the message contains animated rainbows or gradients, so it renders differently over time
+     */
+    public boolean isAnimated() {
+        return this.colorTemplate.isAnimated();
+    }
+
+    /**
+     * @return the placeholders in the message, in the order they first appear
+     */
+    public String[] getPlaceholders() {
+        return this.placeholders.clone();
+    }
+
+    /**
+     * @param placeholder The placeholder
+     * @return the slot of the placeholder in the placeholders created by {@link #createPlaceholders()}, or -1 if
+     * the message doesn't contain it
+     */
+    public int getSlot(String placeholder) {
+        for (int i = 0; i < this.placeholders.length; i++)
+            if (this.placeholders[i].equals(placeholder))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Creates placeholders with a slot for each placeholder in the message, none of them set.
+     * A slot that isn't set is left in the message as it is, so PlaceholderAPI placeholders such as %player_name%
+     * can still be replaced after rendering.
+     * The placeholders can be filled with {@link StringPlaceholders#set(int, Object)} and reused for every render,
+     * they aren't safe to change from more than one thread.
+     *
+     * @return new placeholders for this template
+     */
+    public StringPlaceholders createPlaceholders() {
+        StringPlaceholders placeholders = new StringPlaceholders();
+        for (String placeholder : this.placeholders)
+            placeholders.addSlot(placeholder);
+        return placeholders;
+    }
+
+    /**
+     * Applies placeholders to the message and colors it
+     *
+     * @param placeholders The placeholders to apply
+     * @return The colored message with the given placeholders applied
+     */
+    public String render(StringPlaceholders placeholders) {
+        if (placeholders.isEmpty())
+            return this.colorTemplate.render();
+
+        int length = this.measure(placeholders);
+        if (length == -1)
+            return this.renderDirectly(placeholders);
+        if (length == 0)
+            return this.colorTemplate.render();
+
+        StringBuilder builder = new StringBuilder(length);
+        this.append(placeholders, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Applies placeholders to the message, colors it and appends it to a StringBuilder.
+     * A StringBuilder reused between renders lets a message be rendered without creating any other objects.
+     *
+     * @param placeholders The placeholders to apply
+     * @param builder      The StringBuilder to append to
+     */
+    public void render(StringPlaceholders placeholders, StringBuilder builder) {
+        int length = placeholders.isEmpty() ? 0 : this.measure(placeholders);
+        if (length == -1) {
+            HexUtils.ColorTemplate.compile(placeholders.apply(this.message)).appendTo(builder);
+        } else if (length == 0) {
+            this.colorTemplate.appendTo(builder);
+        } else {
+            this.append(placeholders, builder);
+        }
+    }
+
+    /**
+     * Finds the slots the same way StringPlaceholders#apply does, a part between two % is a slot if it has a value
+     *
+     * @param placeholders The placeholders to apply
+     * @return an estimate of the rendered length, 0 if there are no slots or -1 if the parts can't be rendered apart
+     */
+    private int measure(StringPlaceholders placeholders) {
+        if (!this.splittable || placeholders.hasPercentKeys())
+            return -1;
+
+        boolean found = false;
+        for (int i = 0; i + 2 < this.parts.length; ) {
+            int slot = placeholders.indexOf(this.parts[i + 1]);
+            if (slot == -1) {
+                i++;
+                continue;
+            }
+
+            // Values with color codes or a part ending in an unfinished color could color across the slot
+            if (!this.closed[i] || (!placeholders.isNumber(slot) && containsColorSyntax(placeholders.getValue(slot))))
+                return -1;
+
+            // Placeholders inside the value are expanded by StringPlaceholders#apply
+            if (placeholders.isNested() && !placeholders.isNumber(slot) && placeholders.getValue(slot).indexOf('%') != -1)
+                return -1;
+
+            found = true;
+            i += 2;
+        }
+
+        if (!found)
+            return 0;
+        return this.length + placeholders.size() * 16;
+    }
+
+    private void append(StringPlaceholders placeholders, StringBuilder builder) {
+        builder.append(this.coloredParts[0]);
+        for (int i = 1; i < this.parts.length; i++) {
+            int slot = i + 1 < this.parts.length ? placeholders.indexOf(this.parts[i]) : -1;
+            if (slot != -1) {
+                placeholders.appendValue(slot, builder);
+                builder.append(this.coloredParts[++i]);
+            } else {
+                builder.append('%').append(this.coloredParts[i]);
+            }
+        }
+    }
+
+    private String renderDirectly(StringPlaceholders placeholders) {
+        return HexUtils.ColorTemplate.compile(placeholders.apply(this.message)).render();
+    }
+
+    /**
+     * Checks if coloring a part on its own gives the same result no matter what follows it, no color code can
+     * start near the end of the part and continue past it
+     *
+     * @param part The part
+     * @return true if the colors of the part are decided within it, otherwise false
+     */
+    private static boolean isClosed(String part) {
+        int length = part.length();
+        for (int i = Math.max(0, length - 9); i < length; i++) {
+            char c = part.charAt(i);
+            if (COLOR_SYNTAX.indexOf(c) == -1)
+                continue;
+
+            if (i == length - 1)
+                return false;
+
+            int hash = c == '#' ? i : part.charAt(i + 1) == '#' ? i + 1 : -1;
+            if (hash == -1)
+                continue;
+
+            int digits = 0;
+            while (hash + 1 + digits < length && Character.digit(part.charAt(hash + 1 + digits), 16) != -1)
+                digits++;
+
+            // The hex digits run up to the end, the color may still be finished by what follows
+            if (hash + 1 + digits == length && (digits < 6 || (digits == 6 && (c == '<' || c == '{'))))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean containsColorSyntax(String value) {
+        for (int i = 0; i < value.length(); i++)
+            if (COLOR_SYNTAX.indexOf(value.charAt(i)) != -1)
+                return true;
+        return false;
+    }
+
+}
@@ -1,31 +1,443 @@
 package xyz.akiradev.pluginutils.utils;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public final class StringPlaceholders {
 
-    private final Map<String, String> placeholders;
+    private static final StringPlaceholders EMPTY = new StringPlaceholders();
+    private static final int INDEXED_SIZE = 8; // Look placeholders up through a map once there are more than this
+    private static final int MAX_DEPTH = 10; // How deep placeholders are expanded inside the values of other placeholders
+
+    // Markers for values stored in the numbers array
+    private static final Object LONG = new Object();
+    private static final Object DOUBLE = new Object();
+    private static final Object FLOAT = new Object();
+
+    // Marker for a slot that has been added without a value, it is left in messages as it is
+    private static final Object UNSET = new Object();
+
+    private String[] keys;
+    private Object[] values; // Each value is a String, a LazyValue, LONG, DOUBLE, FLOAT or UNSET
+    private long[] numbers;
+    private int size;
+    private Map<String, Integer> index;
+    private boolean percentKeys;
+    private boolean nested;
 
     public StringPlaceholders() {
-        this.placeholders = new HashMap<>();
+        this.keys = new String[4];
+        this.values = new Object[4];
     }
 
     public void addPlaceholder(String placeholder, Object value) {
-        this.placeholders.put(placeholder, objectToString(value));
+        this.put(placeholder, objectToString(value), 0);
+    }
+
+    public void addPlaceholder(String placeholder, int value) {
+        this.put(placeholder, LONG, value);
+    }
+
+    public void addPlaceholder(String placeholder, long value) {
+        this.put(placeholder, LONG, value);
+    }
+
+    public void addPlaceholder(String placeholder, double value) {
+        this.put(placeholder, DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    public void addPlaceholder(String placeholder, float value) {
+        this.put(placeholder, FLOAT, Float.floatToRawIntBits(value));
+    }
+
+    public void addPlaceholder(String placeholder, char value) {
+        this.put(placeholder, String.valueOf(value), 0);
+    }
+
+    /**
+     * Adds a placeholder whose value is only computed if the placeholder is found in a message being applied.
+     * The supplier is called at most once, the value is reused after that.
+     *
+     * @param placeholder The placeholder
+     * @param supplier    The supplier of the value
+     */
+    public void addLazyPlaceholder(String placeholder, Supplier<?> supplier) {
+        this.put(placeholder, new LazyValue(supplier), 0);
+    }
+
+    /**
+     * Adds a slot for a placeholder without a value, the placeholder is left in messages until its slot is set
+     *
+     * @param placeholder The placeholder
+     */
+    void addSlot(String placeholder) {
+        this.put(placeholder, UNSET, 0);
+    }
+
+    private void put(String placeholder, Object value, long number) {
+        if (this == EMPTY)
+            throw new UnsupportedOperationException("The empty StringPlaceholders can't be modified");
+
+        int i = this.slotOf(placeholder);
+        if (i == -1) {
+            if (this.size == this.keys.length) {
+                this.keys = Arrays.copyOf(this.keys, this.size * 2);
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+
+            i = this.size++;
+            this.keys[i] = placeholder;
+            if (this.index != null) {
+                this.index.put(placeholder, i);
+            } else if (this.size > INDEXED_SIZE) {
+                this.index = new HashMap<>();
+                for (int j = 0; j < this.size; j++)
+                    this.index.put(this.keys[j], j);
+            }
+            if (placeholder.indexOf('%') != -1)
+                this.percentKeys = true;
+        }
+
+        this.setValue(i, value, number);
+    }
+
+    /**
+     * Sets the value of the placeholder in a slot, the slot of a placeholder is the order it was added in
+     *
+     * @param slot  The slot of the placeholder
+     * @param value The value
+     */
+    public void set(int slot, Object value) {
+        this.setValue(this.checkSlot(slot), objectToString(value), 0);
+    }
+
+    public void set(int slot, int value) {
+        this.setValue(this.checkSlot(slot), LONG, value);
+    }
+
+    public void set(int slot, long value) {
+        this.setValue(this.checkSlot(slot), LONG, value);
+    }
+
+    public void set(int slot, double value) {
+        this.setValue(this.checkSlot(slot), DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    public void set(int slot, float value) {
+        this.setValue(this.checkSlot(slot), FLOAT, Float.floatToRawIntBits(value));
+    }
+
+    public void set(int slot, char value) {
+        this.setValue(this.checkSlot(slot), String.valueOf(value), 0);
+    }
+
+    /**
+     * Unsets the value of every placeholder, the placeholders keep their slots so they can be set again without
+     * allocating. Unset placeholders are left in messages as they are.
+     */
+    public void clear() {
+        if (this == EMPTY)
+            throw new UnsupportedOperationException("The empty StringPlaceholders can't be modified");
+
+        Arrays.fill(this.values, 0, this.size, UNSET);
+    }
+
+    /**
+     * Removes all placeholders along with their slots, the storage is kept so placeholders can be added again without
+     * allocating
+     */
+    public void removeAll() {
+        if (this == EMPTY)
+            throw new UnsupportedOperationException("The empty StringPlaceholders can't be modified");
+
+        Arrays.fill(this.keys, 0, this.size, null);
+        Arrays.fill(this.values, 0, this.size, null);
+        this.size = 0;
+        this.index = null;
+        this.percentKeys = false;
+    }
+
+    private int checkSlot(int slot) {
+        if (slot < 0 || slot >= this.size)
+            throw new IndexOutOfBoundsException("Slot " + slot + " is out of bounds for " + this.size + " placeholders");
+        return slot;
+    }
+
+    private void setValue(int i, Object value, long number) {
+        this.values[i] = value;
+        if (value == LONG || value == DOUBLE || value == FLOAT) {
+            if (this.numbers == null || this.numbers.length < this.keys.length)
+                this.numbers = this.numbers == null ? new long[this.keys.length] : Arrays.copyOf(this.numbers, this.keys.length);
+            this.numbers[i] = number;
+        }
     }
 
+    /**
+     * Replaces each %placeholder% in a string with its value, scanning the string once.
+     * Placeholders that share a % are resolved from left to right, so with b and a added, %b%a%a% becomes the value
+     * of b, then an a, then the value of a. Placeholders used to be replaced one key at a time, which resolved such
+     * strings differently depending on the order of the keys.
+     *
+     * @param string The string to apply the placeholders to
+     * @return The string with its placeholders replaced
+     */
     public String apply(String string) {
-        for (String key : this.placeholders.keySet())
-            string = string.replaceAll(Pattern.quote('%' + key + '%'), Matcher.quoteReplacement(this.placeholders.get(key)));
+        if (this.size == 0)
+            return string;
+
+        if (this.nested)
+            return this.applyNested(string);
+
+        // A placeholder containing % can't be found by looking between two %, so replace each one in turn
+        if (this.percentKeys)
+            return this.applyReplacing(string);
+
+        StringBuilder builder = null;
+        int copied = 0;
+        int start = string.indexOf('%');
+        while (start != -1) {
+            int end = string.indexOf('%', start + 1);
+            if (end == -1)
+                break;
+
+            int i = this.indexOf(string.substring(start + 1, end));
+            if (i == -1) {
+                start = end; // The closing % may open the next placeholder
+                continue;
+            }
+
+            if (builder == null)
+                builder = new StringBuilder(string.length() + 16);
+            builder.append(string, copied, start);
+            this.appendValue(i, builder);
+            copied = end + 1;
+            start = string.indexOf('%', copied);
+        }
+
+        if (builder == null)
+            return string;
+        return builder.append(string, copied, string.length()).toString();
+    }
+
+    private String applyReplacing(String string) {
+        for (int i = 0; i < this.size; i++)
+            if (this.values[i] != UNSET && string.contains('%' + this.keys[i] + '%'))
+                string = string.replaceAll(Pattern.quote('%' + this.keys[i] + '%'), Matcher.quoteReplacement(this.getValue(i)));
         return string;
     }
 
+    private String applyNested(String string) {
+        if (this.percentKeys) {
+            for (int depth = 0; depth <= MAX_DEPTH; depth++) {
+                String applied = this.applyReplacing(string);
+                if (applied.equals(string))
+                    break;
+                string = applied;
+            }
+            return string;
+        }
+
+        if (string.indexOf('%') == -1)
+            return string;
+
+        StringBuilder builder = new StringBuilder(string.length() + 16);
+        this.appendNested(string, builder, new String[this.size], new boolean[this.size], 0);
+        return builder.toString();
+    }
+
+    /**
+     * Appends a string with its placeholders replaced, expanding the placeholders inside each value as well.
+     * A placeholder found inside its own value is left as it is.
+     * An expanded value is only reused if expanding it never ran into a placeholder that was still being expanded,
+     * otherwise the value would depend on which placeholder was expanded first.
+     *
+     * @param string    The string to apply the placeholders to
+     * @param builder   The StringBuilder to append to
+     * @param resolved  The expanded value of each placeholder that can be reused
+     * @param resolving Which placeholders are being expanded
+     * @param depth     How many values deep the string is
+     * @return true if a placeholder that was being expanded was found and left as it is, otherwise false
+     */
+    private boolean appendNested(String string, StringBuilder builder, String[] resolved, boolean[] resolving, int depth) {
+        boolean cycled = false;
+        int copied = 0;
+        int start = string.indexOf('%');
+        while (start != -1) {
+            int end = string.indexOf('%', start + 1);
+            if (end == -1)
+                break;
+
+            int i = this.indexOf(string.substring(start + 1, end));
+            if (i == -1) {
+                start = end;
+                continue;
+            }
+
+            builder.append(string, copied, start);
+            if (resolved[i] != null) {
+                builder.append(resolved[i]);
+            } else if (resolving[i]) {
+                builder.append(string, start, end + 1);
+                cycled = true;
+            } else if (this.isNumber(i)) {
+                this.appendValue(i, builder);
+            } else {
+                String value = this.getValue(i);
+                if (value.indexOf('%') == -1 || depth >= MAX_DEPTH) {
+                    builder.append(value);
+                } else {
+                    int mark = builder.length();
+                    resolving[i] = true;
+                    boolean valueCycled = this.appendNested(value, builder, resolved, resolving, depth + 1);
+                    resolving[i] = false;
+                    if (valueCycled) {
+                        cycled = true;
+                    } else {
+                        resolved[i] = builder.substring(mark);
+                    }
+                }
+            }
+            copied = end + 1;
+            start = string.indexOf('%', copied);
+        }
+
+        builder.append(string, copied, string.length());
+        return cycled;
+    }
+
+    /**
+     * Sets if placeholders inside the values of other placeholders are replaced as well, such as a %prefix% with a
+     * value containing %rank%. A placeholder found inside its own value is left as it is, so each placeholder
+     * expands the same way wherever it appears in the message.
+     *
+     * @param nested true to replace placeholders inside values, otherwise false
+     */
+    public void setNested(boolean nested) {
+        if (this == EMPTY)
+            throw new UnsupportedOperationException("The empty StringPlaceholders can't be modified");
+
+        this.nested = nested;
+    }
+
+    /**
+     * @return true if placeholders inside the values of other placeholders are replaced as well, otherwise false
+     */
+    public boolean isNested() {
+        return this.nested;
+    }
+
+    /**
+     * Gets the placeholders and their values, computing the value of any lazy placeholders.
+     * Slots that haven't been set are left out.
+     *
+     * @return the placeholders and their values
+     */
     public Map<String, String> getPlaceholders() {
-        return Collections.unmodifiableMap(this.placeholders);
+        Map<String, String> placeholders = new LinkedHashMap<>();
+        for (int i = 0; i < this.size; i++)
+            if (this.values[i] != UNSET)
+                placeholders.put(this.keys[i], this.getValue(i));
+        return Collections.unmodifiableMap(placeholders);
+    }
+
+    /**
+     * @param placeholder The placeholder
+     * @return the slot of the placeholder, or -1 if it hasn't been added
+     */
+    public int getSlot(String placeholder) {
+        return this.slotOf(placeholder);
+    }
+
+    /**
+     * @return the number of placeholders
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return true if there are no placeholders, otherwise false
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return true if any placeholder contains a %, otherwise false
+     */
+    boolean hasPercentKeys() {
+        return this.percentKeys;
+    }
+
+    /**
+     * @param placeholder The placeholder
+     * @return the index of the placeholder, or -1 if it hasn't been added or its slot hasn't been set
+     */
+    int indexOf(String placeholder) {
+        int i = this.slotOf(placeholder);
+        return i != -1 && this.values[i] != UNSET ? i : -1;
+    }
+
+    private int slotOf(String placeholder) {
+        if (this.index != null) {
+            Integer i = this.index.get(placeholder);
+            return i != null ? i : -1;
+        }
+
+        for (int i = 0; i < this.size; i++)
+            if (this.keys[i].equals(placeholder))
+                return i;
+        return -1;
+    }
+
+    /**
+     * @param index The index of the placeholder
+     * @return true if the value of the placeholder is a number, otherwise false
+     */
+    boolean isNumber(int index) {
+        return this.values[index] == LONG || this.values[index] == DOUBLE || this.values[index] == FLOAT;
+    }
+
+    /**
+     * @param index The index of the placeholder
+     * @return the value of the placeholder
+     */
+    String getValue(int index) {
+        Object value = this.values[index];
+        if (value == LONG)
+            return Long.toString(this.numbers[index]);
+        if (value == DOUBLE)
+            return Double.toString(Double.longBitsToDouble(this.numbers[index]));
+        if (value == FLOAT)
+            return Float.toString(Float.intBitsToFloat((int) this.numbers[index]));
+        if (value instanceof LazyValue)
+            return ((LazyValue) value).get();
+        return (String) value;
+    }
+
+    /**
+     * Appends the value of a placeholder, numbers are appended without being boxed or turned into a String first
+     *
+     * @param index   The index of the placeholder
+     * @param builder The StringBuilder to append to
+     */
+    void appendValue(int index, StringBuilder builder) {
+        Object value = this.values[index];
+        if (value == LONG) {
+            builder.append(this.numbers[index]);
+        } else if (value == DOUBLE) {
+            builder.append(Double.longBitsToDouble(this.numbers[index]));
+        } else if (value == FLOAT) {
+            builder.append(Float.intBitsToFloat((int) this.numbers[index]));
+        } else {
+            builder.append(this.getValue(index));
+        }
     }
 
     public static Builder builder() {
@@ -36,8 +448,11 @@ public final class StringPlaceholders {
         return new Builder(placeholder, objectToString(value));
     }
 
+    /**
+     * @return the shared StringPlaceholders without any placeholders, it can't be modified
+     */
     public static StringPlaceholders empty() {
-        return builder().build();
+        return EMPTY;
     }
 
     public static StringPlaceholders single(String placeholder, Object value) {
@@ -48,6 +463,28 @@ public final class StringPlaceholders {
         return object != null ? object.toString() : "null";
     }
 
+    /**
+     * A placeholder value computed the first time it is needed
+     */
+    private static final class LazyValue {
+
+        private Supplier<?> supplier;
+        private String value;
+
+        private LazyValue(Supplier<?> supplier) {
+            this.supplier = supplier;
+        }
+
+        private synchronized String get() {
+            if (this.supplier != null) {
+                this.value = objectToString(this.supplier.get());
+                this.supplier = null;
+            }
+            return this.value;
+        }
+
+    }
+
     public static class Builder {
 
         private final StringPlaceholders stringPlaceholders;
@@ -66,8 +503,41 @@ public final class StringPlaceholders {
             return this;
         }
 
+        public Builder addPlaceholder(String placeholder, int value) {
+            this.stringPlaceholders.addPlaceholder(placeholder, value);
+            return this;
+        }
+
+        public Builder addPlaceholder(String placeholder, long value) {
+            this.stringPlaceholders.addPlaceholder(placeholder, value);
+            return this;
+        }
+
+        public Builder addPlaceholder(String placeholder, double value) {
+            this.stringPlaceholders.addPlaceholder(placeholder, value);
+            return this;
+        }
+
+        public Builder addPlaceholder(String placeholder, float value) {
+            this.stringPlaceholders.addPlaceholder(placeholder, value);
+            return this;
+        }
+
+        public Builder addPlaceholder(String placeholder, char value) {
+            this.stringPlaceholders.addPlaceholder(placeholder, value);
+            return this;
+        }
+
+        public Builder addLazyPlaceholder(String placeholder, Supplier<?> supplier) {
+            this.stringPlaceholders.addLazyPlaceholder(placeholder, supplier);
+            return this;
+        }
+
         public Builder addAll(StringPlaceholders placeholders) {
-            return this.addAll(placeholders.getPlaceholders());
+            // Copy the values as they are so lazy placeholders stay lazy
+            for (int i = 0; i < placeholders.size; i++)
+                this.stringPlaceholders.put(placeholders.keys[i], placeholders.values[i], placeholders.isNumber(i) ? placeholders.numbers[i] : 0);
+            return this;
         }
 
         public Builder addAll(Map<String, String> placeholders) {
@@ -76,6 +546,21 @@ public final class StringPlaceholders {
             return this;
         }
 
+        public Builder nested() {
+            this.stringPlaceholders.setNested(true);
+            return this;
+        }
+
+        public Builder clear() {
+            this.stringPlaceholders.clear();
+            return this;
+        }
+
+        public Builder removeAll() {
+            this.stringPlaceholders.removeAll();
+            return this;
+        }
+
         public String apply(String string) {
             return this.stringPlaceholders.apply(string);
         }
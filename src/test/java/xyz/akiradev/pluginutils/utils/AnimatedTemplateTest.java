@@ -0,0 +1,125 @@
+package xyz.akiradev.pluginutils.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the frame cache of animated templates, on servers with and without hex color support
+ */
+@RunWith(Parameterized.class)
+public class AnimatedTemplateTest {
+
+    // The start of a 40 and a 50 millisecond frame, where the gradient below is partway down its bounce.
+    // Gradients can overshoot their last color and throw at the top of the bounce, the same as the old parser did.
+    private static final long TIME = 1_650_000_001_000L;
+    private static final int MAX_ATTEMPTS = 1000;
+
+    private static final String GRADIENT = "<g#40:#ff0000:#0000ff>An animated gradient";
+    private static final String RAINBOW = "<r#5>An animated rainbow";
+    private static final String[] MESSAGES = {
+            GRADIENT,
+            RAINBOW,
+            "&lBold <rainbow#3:0.5:0.8:l>a looping rainbow that is longer than thirty characters",
+            "<g#25:#abc:#def:#123:loop>three stops &athen green",
+            "<r#2>ab&r <g#70:#abcdef:#fedcba>cd {#123456}ef",
+            "before <gradient#10:#ABCDEF:#123456>after &k%p%"
+    };
+
+    private final String version;
+
+    public AnimatedTemplateTest(String version) {
+        this.version = version;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> versions() {
+        return Arrays.asList(new Object[] { ServerVersions.HEX }, new Object[] { ServerVersions.LEGACY });
+    }
+
+    @Before
+    public void setUp() {
+        ServerVersions.set(this.version);
+    }
+
+    @After
+    public void tearDown() {
+        ServerVersions.set(null);
+    }
+
+    @Test
+    public void reusesTheFrameWithinAFrame() {
+        HexUtils.ColorTemplate template = HexUtils.ColorTemplate.compile(GRADIENT);
+        assertTrue(template.isAnimated());
+
+        String rendered = template.renderAt(TIME);
+        assertSame(rendered, template.renderAt(TIME + 1));
+        assertSame(rendered, template.renderAt(TIME + 39));
+    }
+
+    @Test
+    public void rendersAgainAtAFrameBoundary() {
+        HexUtils.ColorTemplate template = HexUtils.ColorTemplate.compile(GRADIENT);
+        String rendered = template.renderAt(TIME);
+        String next = template.renderAt(TIME + 40);
+
+        assertNotSame(rendered, next);
+        assertEquals(HexUtils.ColorTemplate.compile(GRADIENT).renderAt(TIME + 40), next);
+        if (ServerVersions.HEX.equals(this.version))
+            assertNotEquals(rendered, next); // Legacy colors are too coarse to always change between frames
+    }
+
+    @Test
+    public void rendersEveryAnimationAtItsOwnFrame() {
+        String message = GRADIENT + " " + RAINBOW;
+        HexUtils.ColorTemplate template = HexUtils.ColorTemplate.compile(message);
+        String rendered = template.renderAt(TIME);
+
+        // The gradient moves every 40 milliseconds, the rainbow every 50
+        assertSame(rendered, template.renderAt(TIME + 39));
+        assertEquals(HexUtils.ColorTemplate.compile(message).renderAt(TIME + 40), template.renderAt(TIME + 40));
+        assertEquals(HexUtils.ColorTemplate.compile(message).renderAt(TIME + 50), template.renderAt(TIME + 50));
+    }
+
+    @Test
+    public void matchesTheOldParserAtAFixedTime() {
+        for (String message : MESSAGES) {
+            assertTrue(message, HexUtils.ColorTemplate.compile(message).isAnimated());
+
+            // The old parser always animates at the current time, so only compare once it colors within a millisecond
+            for (int attempt = 1; ; attempt++) {
+                long time = System.currentTimeMillis();
+                String expected = render(LegacyHexUtils::colorify, message);
+                if (System.currentTimeMillis() == time) {
+                    assertEquals(message, expected, render(x -> HexUtils.ColorTemplate.compile(x).renderAt(time), message));
+                    break;
+                }
+                assertTrue("Couldn't color " + message + " within one millisecond", attempt < MAX_ATTEMPTS);
+            }
+        }
+    }
+
+    /**
+     * @return the output of the parser, or the name of the exception it threw
+     */
+    private static String render(Function<String, String> parser, String message) {
+        try {
+            return parser.apply(message);
+        } catch (RuntimeException e) {
+            return "threw " + e.getClass().getName();
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package xyz.akiradev.pluginutils.utils;
+
+import java.util.function.Function;
+
+/**
+ * Measures parsing lines with 1, 10 and 50 gradient tags, comparing the stop search from the start of the message for
+ * every tag in {@link LegacyHexUtils} against the stops indexed once per message in {@link HexUtils}.
+ * Run the main method with the test classpath, it isn't part of the test suite.
+ */
+public final class ColorStopBenchmark {
+
+    private static final int[] TAGS_PER_LINE = { 1, 10, 50 };
+    private static final int TAGS_PER_ROUND = 20000;
+    private static final int ROUNDS = 5;
+
+    private ColorStopBenchmark() {
+
+    }
+
+    public static void main(String[] args) {
+        ServerVersions.set(ServerVersions.HEX);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.printf("round %d%n", round + 1);
+            for (int tags : TAGS_PER_LINE) {
+                StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < tags; i++)
+                    builder.append("<g:#ff0000:#0000ff>gradient ").append(i).append(' ');
+                String line = builder.toString();
+
+                // The same number of tags each time, so a linear parser takes the same time for every size
+                int lines = TAGS_PER_ROUND / tags;
+                System.out.printf("  %2d tags  regex %8.1f us/line   new %8.1f us/line%n", tags,
+                        parse(line, lines, LegacyHexUtils::parseGradients),
+                        parse(line, lines, HexUtils::parseGradients));
+            }
+        }
+
+        ServerVersions.set(null);
+    }
+
+    /**
+     * @return the average microseconds to parse the line
+     */
+    private static double parse(String line, int lines, Function<String, String> parser) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < lines; i++)
+            sink += parser.apply(line).length();
+        long nanos = System.nanoTime() - start;
+        if (sink == 42)
+            System.out.print(""); // Keeps the JIT from removing the measured work
+        return nanos / 1000.0 / lines;
+    }
+
+}
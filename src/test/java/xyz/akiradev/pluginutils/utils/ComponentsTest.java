@@ -0,0 +1,62 @@
+package xyz.akiradev.pluginutils.utils;
+
+import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.TextComponent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the chat components rendered from templates
+ */
+public class ComponentsTest {
+
+    @Before
+    public void setUp() {
+        ServerVersions.set(ServerVersions.HEX);
+    }
+
+    @After
+    public void tearDown() {
+        ServerVersions.set(null);
+    }
+
+    @Test
+    public void mergesRunsSharingAStyle() {
+        BaseComponent[] components = HexUtils.ColorTemplate.compile("&aHello &aworld &lbold").renderComponents();
+
+        assertEquals(2, components.length);
+        assertEquals("Hello world ", ((TextComponent) components[0]).getText());
+        assertEquals(ChatColor.GREEN, components[0].getColor());
+        assertEquals("bold", ((TextComponent) components[1]).getText());
+        assertTrue(components[1].isBold());
+    }
+
+    @Test
+    public void handsOutCopiesOfTheCachedComponents() {
+        HexUtils.ColorTemplate template = HexUtils.ColorTemplate.compile("&aHello <#123456>world");
+        BaseComponent[] first = template.renderComponents();
+        ((TextComponent) first[0]).setText("changed");
+
+        BaseComponent[] second = template.renderComponents();
+        assertNotSame(first[0], second[0]);
+        assertEquals("Hello ", ((TextComponent) second[0]).getText());
+        assertEquals("world", ((TextComponent) second[1]).getText());
+    }
+
+    @Test
+    public void handsOutCopiesOfTheFrameComponents() {
+        HexUtils.ColorTemplate template = HexUtils.ColorTemplate.compile("<r#3>animated");
+        BaseComponent[] first = template.renderComponents();
+        BaseComponent[] second = template.renderComponents();
+
+        assertEquals(first.length, second.length);
+        assertNotSame(first[0], second[0]);
+    }
+
+}
@@ -0,0 +1,68 @@
+package xyz.akiradev.pluginutils.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the gradient colors of {@link HexUtils.Gradient} against the sine wave in {@link LegacyHexUtils.Gradient}
+ */
+public class GradientTest {
+
+    private static final List<Color> COLORS = Arrays.asList(Color.RED, Color.BLUE, Color.GREEN);
+
+    @Before
+    public void setUp() {
+        ServerVersions.set(ServerVersions.HEX);
+    }
+
+    @After
+    public void tearDown() {
+        ServerVersions.set(null);
+    }
+
+    @Test
+    public void bouncesLikeTheSineWave() {
+        for (int steps = 1; steps <= 64; steps++)
+            assertSameColors(steps, 4 * steps + 3);
+    }
+
+    @Test
+    public void noStepsKeepTheSineWaveColors() {
+        for (int steps = -8; steps <= 0; steps++)
+            assertSameColors(steps, 16);
+    }
+
+    private static void assertSameColors(int steps, int colors) {
+        HexUtils.Gradient gradient = new HexUtils.Gradient(COLORS, steps);
+        LegacyHexUtils.Gradient legacyGradient = new LegacyHexUtils.Gradient(COLORS, steps);
+        for (int i = 0; i < colors; i++)
+            assertEquals("steps " + steps + ", color " + i, nextColor(legacyGradient), nextColor(gradient));
+    }
+
+    /**
+     * @return the next color of the gradient, or the name of the exception it threw
+     */
+    private static String nextColor(HexUtils.ColorGenerator generator) {
+        try {
+            return generator.nextColor().toString();
+        } catch (RuntimeException e) {
+            return "threw " + e.getClass().getName();
+        }
+    }
+
+    private static String nextColor(LegacyHexUtils.ColorGenerator generator) {
+        try {
+            return generator.nextColor().toString();
+        } catch (RuntimeException e) {
+            return "threw " + e.getClass().getName();
+        }
+    }
+
+}
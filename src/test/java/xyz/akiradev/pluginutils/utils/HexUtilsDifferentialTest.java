@@ -0,0 +1,128 @@
+package xyz.akiradev.pluginutils.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the single pass parser in {@link HexUtils} against the frozen regex parser in {@link LegacyHexUtils} over a
+ * seeded corpus of color syntax, on servers with and without hex color support
+ */
+@RunWith(Parameterized.class)
+public class HexUtilsDifferentialTest {
+
+    private static final long SEED = 0x5EEDL;
+    private static final int GENERATED_MESSAGES = 20000;
+    private static final int MAX_TOKENS = 12;
+
+    private static final String[] TOKENS = {
+            "<r>", "<rainbow:0.5:0.7>", "<r:0.3>", "<r:loop>", "<g:#f00:#00f>", "<g:#ff0000:#00ff00:#0000ff:l>",
+            "<gradient:#ABCDEF:#123:loop>", "<#abcdef>", "{#ABCDEF}", "&#123abc", "#fedcba", "#FEDCBA", "&a", "&l", "&k",
+            "&r", "&K", "&L", "&R", "&x", "&X", "&", "#", "<", ">", "{", "}", "§", "§a", "x", "hello ", "world", "%p%",
+            ":", " ", "abcdefghijklmnopqrstuvwxyz0123456789", "&&", "<g:#abcdef>", "<r#>", "<g:#abc:#def:#>", "&lBold",
+            "ab", "123456", "ABCDEF", "<g#100000000:#f00:#00f>", "<r#0>", "<g#0:#abc:#def>", "<r#0:0.2>&l"
+    };
+
+    private final String version;
+
+    public HexUtilsDifferentialTest(String version) {
+        this.version = version;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> versions() {
+        return Arrays.asList(new Object[] { ServerVersions.HEX }, new Object[] { ServerVersions.LEGACY });
+    }
+
+    @Before
+    public void setUp() {
+        ServerVersions.set(this.version);
+    }
+
+    @After
+    public void tearDown() {
+        ServerVersions.set(null);
+    }
+
+    @Test
+    public void colorify() {
+        this.compare(LegacyHexUtils::colorify, HexUtils::colorify);
+    }
+
+    @Test
+    public void colorifyIntoStringBuilder() {
+        this.compare(x -> "prefix " + LegacyHexUtils.colorify(x), x -> {
+            StringBuilder builder = new StringBuilder("prefix ");
+            HexUtils.colorify(x, builder);
+            return builder.toString();
+        });
+    }
+
+    @Test
+    public void parseRainbow() {
+        this.compare(LegacyHexUtils::parseRainbow, HexUtils::parseRainbow);
+    }
+
+    @Test
+    public void parseGradients() {
+        this.compare(LegacyHexUtils::parseGradients, HexUtils::parseGradients);
+    }
+
+    @Test
+    public void parseHex() {
+        this.compare(LegacyHexUtils::parseHex, HexUtils::parseHex);
+    }
+
+    @Test
+    public void parseLegacy() {
+        this.compare(LegacyHexUtils::parseLegacy, HexUtils::parseLegacy);
+    }
+
+    private void compare(Function<String, String> expected, Function<String, String> actual) {
+        for (String message : createCorpus())
+            assertEquals("[" + message + "]", run(expected, message), run(actual, message));
+    }
+
+    /**
+     * @return every token, every pair of tokens, then runs of random tokens from a fixed seed
+     */
+    private static List<String> createCorpus() {
+        List<String> corpus = new ArrayList<>(Arrays.asList(TOKENS));
+        for (String first : TOKENS)
+            for (String second : TOKENS)
+                corpus.add(first + second);
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < GENERATED_MESSAGES; i++) {
+            StringBuilder builder = new StringBuilder();
+            int tokens = random.nextInt(MAX_TOKENS);
+            for (int j = 0; j < tokens; j++)
+                builder.append(TOKENS[random.nextInt(TOKENS.length)]);
+            corpus.add(builder.toString());
+        }
+        return corpus;
+    }
+
+    /**
+     * @return the output of the parser, or the name of the exception it threw
+     */
+    private static String run(Function<String, String> parser, String message) {
+        try {
+            return parser.apply(message);
+        } catch (RuntimeException e) {
+            return "threw " + e.getClass().getName();
+        }
+    }
+
+}
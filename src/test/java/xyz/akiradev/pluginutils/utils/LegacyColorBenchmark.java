@@ -0,0 +1,84 @@
+package xyz.akiradev.pluginutils.utils;
+
+import java.awt.*;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Measures downsampling colors to the closest legacy ChatColor on servers below 1.16, comparing the linear search in
+ * {@link LegacyHexUtils} against the lookup table in {@link HexUtils}.
+ * Run the main method with the test classpath, it isn't part of the test suite.
+ */
+public final class LegacyColorBenchmark {
+
+    private static final int COLORS = 1 << 20;
+    private static final int LINES = 2000;
+    private static final int ROUNDS = 5;
+
+    private LegacyColorBenchmark() {
+
+    }
+
+    public static void main(String[] args) {
+        ServerVersions.set(ServerVersions.LEGACY);
+
+        Random random = new Random(1);
+        int[] colors = new int[COLORS];
+        for (int i = 0; i < colors.length; i++)
+            colors[i] = random.nextInt(1 << 24);
+
+        String[] lines = new String[LINES];
+        for (int i = 0; i < lines.length; i++)
+            lines[i] = "<g:#" + hex(random) + ":#" + hex(random) + ">A gradient heavy line of chat number " + i
+                    + " <r:0.8>with a rainbow &lafter it";
+
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.printf("round %d%n", round + 1);
+            System.out.printf("  lookup   linear %6.1f ns/color   table %6.1f ns/color%n",
+                    lookup(colors, x -> LegacyHexUtils.translateHex(new Color(x)).hashCode()),
+                    lookup(colors, x -> HexUtils.translateHex(x).hashCode()));
+            System.out.printf("  colorify regex  %6.1f us/line    new   %6.1f us/line%n",
+                    colorify(lines, LegacyHexUtils::colorify),
+                    colorify(lines, x -> HexUtils.ColorTemplate.compile(x).render()));
+        }
+
+        ServerVersions.set(null);
+    }
+
+    /**
+     * @return the average nanoseconds to look up one color
+     */
+    private static double lookup(int[] colors, IntUnaryOperator lookup) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int color : colors)
+            sink += lookup.applyAsInt(color);
+        return consume(System.nanoTime() - start, sink) / (double) colors.length;
+    }
+
+    /**
+     * @return the average microseconds to color one line, compiled every time so nothing is served from the cache
+     */
+    private static double colorify(String[] lines, Function<String, String> colorify) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (String line : lines)
+            sink += colorify.apply(line).length();
+        return consume(System.nanoTime() - start, sink) / 1000.0 / lines.length;
+    }
+
+    private static String hex(Random random) {
+        return String.format("%06x", random.nextInt(1 << 24));
+    }
+
+    /**
+     * Keeps the JIT from removing the measured work
+     */
+    private static long consume(long nanos, int sink) {
+        if (sink == 42)
+            System.out.print("");
+        return nanos;
+    }
+
+}
@@ -0,0 +1,123 @@
+package xyz.akiradev.pluginutils.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares rendering a compiled {@link MessageTemplate} against applying the placeholders and then coloring the
+ * message with {@link HexUtils#colorify(String)}, over a seeded corpus of messages and placeholder values, on servers
+ * with and without hex color support
+ */
+@RunWith(Parameterized.class)
+public class MessageTemplateDifferentialTest {
+
+    private static final long SEED = 0x5EEDL;
+    private static final int GENERATED_MESSAGES = 20000;
+    private static final int MAX_TOKENS = 9;
+    private static final int MAX_PLACEHOLDERS = 4;
+    private static final String PREFIX = "§aprefix ";
+
+    private static final String[] TOKENS = {
+            "%", "%p%", "%name%", "%x%", "%%", "%a%b%", "&", "&a", "&l", "&r", "#", "#abc", "#abcdef", "<", "<#", "{",
+            "{#ab", ">", "}", "a", "12", "f", "hello ", "<g:#f00:#00f>", "<r>", "<r:0.5>", "&#12", " ", "<#abcdef>",
+            "{#ABCDEF}", "&x", "§", "§a"
+    };
+    private static final String[] KEYS = { "p", "name", "x", "", "a%b" };
+    private static final String[] VALUES = {
+            "", "a", "abcdef", "f>", "Steve", "&c", "#123456", "<r>", "1}", "b", "%p%", "<", "{", "&", "#", "§c", "$1"
+    };
+
+    private final String version;
+
+    public MessageTemplateDifferentialTest(String version) {
+        this.version = version;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> versions() {
+        return Arrays.asList(new Object[] { ServerVersions.HEX }, new Object[] { ServerVersions.LEGACY });
+    }
+
+    @Before
+    public void setUp() {
+        ServerVersions.set(this.version);
+    }
+
+    @After
+    public void tearDown() {
+        ServerVersions.set(null);
+    }
+
+    @Test
+    public void render() {
+        this.compare(false, (message, placeholders) -> MessageTemplate.compile(message).render(placeholders));
+    }
+
+    @Test
+    public void renderNested() {
+        this.compare(true, (message, placeholders) -> MessageTemplate.compile(message).render(placeholders));
+    }
+
+    @Test
+    public void renderIntoStringBuilder() {
+        this.compare(false, (message, placeholders) -> {
+            StringBuilder builder = new StringBuilder(PREFIX);
+            MessageTemplate.compile(message).render(placeholders, builder);
+            return builder.substring(PREFIX.length());
+        });
+    }
+
+    private void compare(boolean nested, BiFunction<String, StringPlaceholders, String> render) {
+        Random random = new Random(SEED);
+        for (int i = 0; i < GENERATED_MESSAGES; i++) {
+            StringBuilder message = new StringBuilder();
+            for (int j = random.nextInt(MAX_TOKENS); j > 0; j--)
+                message.append(TOKENS[random.nextInt(TOKENS.length)]);
+
+            StringPlaceholders placeholders = new StringPlaceholders();
+            placeholders.setNested(nested);
+            for (int j = random.nextInt(MAX_PLACEHOLDERS); j > 0; j--) {
+                String key = KEYS[random.nextInt(KEYS.length)];
+                switch (random.nextInt(3)) {
+                    case 0:
+                        placeholders.addPlaceholder(key, random.nextInt(2000) - 1000);
+                        break;
+                    case 1:
+                        String value = VALUES[random.nextInt(VALUES.length)];
+                        placeholders.addLazyPlaceholder(key, () -> value);
+                        break;
+                    default:
+                        placeholders.addPlaceholder(key, VALUES[random.nextInt(VALUES.length)]);
+                }
+            }
+
+            String string = message.toString();
+            assertEquals("[" + string + "] " + placeholders.getPlaceholders(),
+                    run(() -> HexUtils.colorify(placeholders.apply(string))),
+                    run(() -> render.apply(string, placeholders)));
+        }
+    }
+
+    /**
+     * @return the rendered message, or the name of the exception thrown while rendering it
+     */
+    private static String run(Supplier<String> render) {
+        try {
+            return render.get();
+        } catch (RuntimeException e) {
+            return "threw " + e.getClass().getName();
+        }
+    }
+
+}
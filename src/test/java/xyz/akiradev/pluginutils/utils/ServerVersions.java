@@ -0,0 +1,38 @@
+package xyz.akiradev.pluginutils.utils;
+
+import java.lang.reflect.Field;
+
+/**
+ * Sets the server version {@link NMSUtil} reports, so the color paths for each version can be run without a server
+ */
+final class ServerVersions {
+
+    static final String HEX = "v1_19_R1";
+    static final String LEGACY = "v1_12_R1";
+
+    private ServerVersions() {
+
+    }
+
+    /**
+     * Sets the server version and removes the templates cached for the previous one
+     *
+     * @param version The server package version, or null to read it from the server again
+     */
+    static void set(String version) {
+        try {
+            Field cachedVersion = NMSUtil.class.getDeclaredField("cachedVersion");
+            cachedVersion.setAccessible(true);
+            cachedVersion.set(null, version);
+
+            Field cachedVersionNumber = NMSUtil.class.getDeclaredField("cachedVersionNumber");
+            cachedVersionNumber.setAccessible(true);
+            cachedVersionNumber.set(null, -1);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+
+        HexUtils.ColorTemplate.clearCache();
+    }
+
+}
@@ -0,0 +1,150 @@
+package xyz.akiradev.pluginutils.utils;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests applying placeholders, comparing against replacing one placeholder at a time the way the old
+ * {@link StringPlaceholders} did
+ */
+public class StringPlaceholdersTest {
+
+    private static final long SEED = 0x5EEDL;
+    private static final int GENERATED_MESSAGES = 20000;
+    private static final int MAX_TOKENS = 10;
+    private static final int MAX_DEPTH = 10;
+
+    private static final String[] KEYS = { "player", "name", "a", "b", "x", "rank", "amount", "world", "time", "ten" };
+    private static final String[] VALUES = { "", "Steve", "a", "b", "&c", "#123456", "<r>", "1}", "{", "$1", "\\", "a b" };
+    private static final String[] TEXT = { "", " ", "hello ", "world", "a", "&a", "<g:#f00:#00f>", "$", "\\", "{}" };
+
+    @Test
+    public void matchesTheOldOutputForSeparatePlaceholders() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < GENERATED_MESSAGES; i++) {
+            // Past 8 placeholders they are looked up through a map
+            StringPlaceholders placeholders = new StringPlaceholders();
+            for (int j = random.nextInt(KEYS.length + 1); j > 0; j--)
+                placeholders.addPlaceholder(KEYS[random.nextInt(KEYS.length)], VALUES[random.nextInt(VALUES.length)]);
+
+            // Tokens are separated so no placeholder shares a % with the next one
+            StringBuilder builder = new StringBuilder();
+            for (int j = random.nextInt(MAX_TOKENS); j > 0; j--) {
+                builder.append(' ');
+                switch (random.nextInt(3)) {
+                    case 0:
+                        builder.append('%').append(KEYS[random.nextInt(KEYS.length)]).append('%');
+                        break;
+                    case 1:
+                        builder.append("%missing%");
+                        break;
+                    default:
+                        builder.append(TEXT[random.nextInt(TEXT.length)]);
+                }
+            }
+
+            String message = builder.toString();
+            assertEquals("[" + message + "] " + placeholders.getPlaceholders(), replaceEach(placeholders, message), placeholders.apply(message));
+        }
+    }
+
+    @Test
+    public void resolvesOverlappingPlaceholdersFromLeftToRight() {
+        StringPlaceholders placeholders = StringPlaceholders.builder("b", "B").addPlaceholder("a", "A").build();
+        assertEquals("BaA", placeholders.apply("%b%a%a%"));
+        assertEquals("%AbB", placeholders.apply("%%a%b%b%"));
+    }
+
+    @Test
+    public void replacesPlaceholdersContainingAPercent() {
+        StringPlaceholders placeholders = StringPlaceholders.builder("a%b", "X").addPlaceholder("c", "Y").build();
+        String message = "%a%b% %c% %a% %b%";
+        assertEquals("X Y %a% %b%", placeholders.apply(message));
+        assertEquals(replaceEach(placeholders, message), placeholders.apply(message));
+    }
+
+    @Test
+    public void expandsNestedPlaceholders() {
+        StringPlaceholders placeholders = StringPlaceholders.builder("prefix", "[%rank%] ")
+                .addPlaceholder("rank", "%color%Admin")
+                .addPlaceholder("color", "&c")
+                .addPlaceholder("amount", 5)
+                .build();
+        String message = "%prefix%%prefix%has %amount%";
+
+        assertEquals("[%rank%] [%rank%] has 5", placeholders.apply(message));
+        placeholders.setNested(true);
+        assertEquals("[&cAdmin] [&cAdmin] has 5", placeholders.apply(message));
+    }
+
+    @Test
+    public void leavesAPlaceholderInsideItsOwnValue() {
+        StringPlaceholders placeholders = StringPlaceholders.builder("a", "x%a%").nested().build();
+        assertEquals("x%a% x%a%", placeholders.apply("%a% %a%"));
+    }
+
+    @Test
+    public void expandsMutualPlaceholdersTheSameWayEverywhere() {
+        StringPlaceholders placeholders = StringPlaceholders.builder("a", "x%b%").addPlaceholder("b", "%a%").nested().build();
+        assertEquals("x%a% x%b%", placeholders.apply("%a% %b%"));
+        assertEquals("x%b% x%a%", placeholders.apply("%b% %a%"));
+    }
+
+    @Test
+    public void stopsExpandingAtTheDepthLimit() {
+        StringPlaceholders.Builder builder = StringPlaceholders.builder().nested();
+        for (int i = 0; i < MAX_DEPTH + 5; i++)
+            builder.addPlaceholder("p" + i, "%p" + (i + 1) + "%");
+        builder.addPlaceholder("p" + (MAX_DEPTH + 5), "end");
+        StringPlaceholders placeholders = builder.build();
+
+        assertEquals("%p" + (MAX_DEPTH + 1) + "%", placeholders.apply("%p0%"));
+        assertEquals("end", placeholders.apply("%p" + 5 + "%"));
+    }
+
+    @Test
+    public void clearKeepsTheSlots() {
+        MessageTemplate template = MessageTemplate.compile("%player% has %amount% %item%");
+        StringPlaceholders placeholders = template.createPlaceholders();
+        int player = template.getSlot("player");
+        placeholders.set(player, "Steve");
+        placeholders.set(template.getSlot("amount"), 5);
+
+        placeholders.clear();
+        assertEquals("%player% has %amount% %item%", placeholders.apply("%player% has %amount% %item%"));
+        assertEquals(3, placeholders.size());
+
+        placeholders.set(player, "Alex");
+        assertEquals(player, placeholders.getSlot("player"));
+        assertEquals("Alex has %amount% %item%", placeholders.apply("%player% has %amount% %item%"));
+    }
+
+    @Test
+    public void removeAllDropsTheSlots() {
+        StringPlaceholders placeholders = StringPlaceholders.builder("a", "A").addPlaceholder("b", "B").build();
+        placeholders.removeAll();
+        assertEquals(0, placeholders.size());
+        assertEquals(-1, placeholders.getSlot("a"));
+        assertEquals("%a%", placeholders.apply("%a%"));
+
+        placeholders.addPlaceholder("b", "C");
+        assertEquals(0, placeholders.getSlot("b"));
+        assertEquals("C", placeholders.apply("%b%"));
+    }
+
+    /**
+     * Replaces each placeholder through the whole string in turn, the way placeholders were applied before
+     */
+    private static String replaceEach(StringPlaceholders placeholders, String string) {
+        for (Map.Entry<String, String> placeholder : placeholders.getPlaceholders().entrySet())
+            string = string.replaceAll(Pattern.quote('%' + placeholder.getKey() + '%'), Matcher.quoteReplacement(placeholder.getValue()));
+        return string;
+    }
+
+}